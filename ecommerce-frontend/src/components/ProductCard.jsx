@@ -1,6 +1,9 @@
 import './ProductCard.css';
 
 const ProductCard = ({ product, onAddToCart, showActions = true }) => {
+    // Units held for pending orders cannot be bought
+    const available = product.availableQuantity ?? product.stockQuantity;
+
     return (
         <div className="product-card">
             <div className="product-image">
@@ -15,11 +18,11 @@ const ProductCard = ({ product, onAddToCart, showActions = true }) => {
                 <p className="product-description">{product.description}</p>
                 <div className="product-details">
                     <span className="product-price">${product.price}</span>
-                    <span className={`product-stock ${product.stockQuantity > 0 ? 'in-stock' : 'out-of-stock'}`}>
-                        {product.stockQuantity > 0 ? `${product.stockQuantity} in stock` : 'Out of stock'}
+                    <span className={`product-stock ${available > 0 ? 'in-stock' : 'out-of-stock'}`}>
+                        {available > 0 ? `${available} in stock` : 'Out of stock'}
                     </span>
                 </div>
-                {showActions && product.stockQuantity > 0 && (
+                {showActions && available > 0 && (
                     <button onClick={() => onAddToCart(product)} className="btn btn-primary">
                         Add to Order
                     </button>
@@ -110,7 +110,7 @@ const ProductListPage = () => {
             };
 
             await orderService.placeOrder(orderData);
-            alert('Order placed successfully! Check your order history.');
+            alert('Order received! Payment is being processed - check your order history for the result.');
             setCart([]);
             setShowCart(false);
             navigate('/orders');
@@ -0,0 +1,91 @@
+package com.ecommerce.config;
+
+import com.ecommerce.cache.CompactCacheSerializer;
+import com.ecommerce.dto.ProductDTO;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization cost of product pages through the value serializers
+ * {@link RedisConfig} can use: JSON, Smile, and Smile with LZ4 above 1 KB.
+ * Listing pages are cached as plain lists, so the round trip is measured on
+ * the list and the {@link Page} wrapper is only serialized. The encoded size
+ * per product is printed during setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheSerializationBenchmark {
+
+    @Param({"10", "50"})
+    private int pageSize;
+
+    @Param({"json", "smile", "smile-lz4"})
+    private String codec;
+
+    @Param({"40", "800"})
+    private int descriptionLength;
+
+    private RedisSerializer<Object> serializer;
+    private Page<ProductDTO> page;
+    private List<ProductDTO> listing;
+    private byte[] serializedListing;
+
+    @Setup
+    public void setUp() {
+        serializer = switch (codec) {
+            case "json" -> new GenericJackson2JsonRedisSerializer();
+            case "smile" -> new CompactCacheSerializer(0);
+            default -> new CompactCacheSerializer(1024);
+        };
+
+        listing = new ArrayList<>();
+        for (long id = 1; id <= pageSize; id++) {
+            listing.add(new ProductDTO(id, "Product " + id, description(id),
+                    new BigDecimal("19.99"), 100, 100, 1L, "Electronics", "https://example.com/" + id + ".jpg",
+                    true, LocalDateTime.now(), LocalDateTime.now()));
+        }
+        page = new PageImpl<>(listing, PageRequest.of(0, pageSize), 10_000);
+        serializedListing = serializer.serialize(listing);
+        System.out.printf("%n%s: %d bytes per product (%d for %d products)%n",
+                codec, serializedListing.length / pageSize, serializedListing.length, pageSize);
+    }
+
+    private String description(long id) {
+        StringBuilder description = new StringBuilder("Description of product " + id + ".");
+        String[] words = {" Durable", " lightweight", " design", " with", " a", " two-year", " warranty."};
+        for (int i = 0; description.length() < descriptionLength; i++) {
+            description.append(words[i % words.length]);
+        }
+        description.setLength(descriptionLength);
+        return description.toString();
+    }
+
+    @Benchmark
+    public byte[] serializePage() {
+        return serializer.serialize(page);
+    }
+
+    @Benchmark
+    public byte[] serializeListing() {
+        return serializer.serialize(listing);
+    }
+
+    @Benchmark
+    public Object deserializeListing() {
+        return serializer.deserialize(serializedListing);
+    }
+}
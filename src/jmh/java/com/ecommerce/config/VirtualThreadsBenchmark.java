@@ -0,0 +1,152 @@
+package com.ecommerce.config;
+
+import com.ecommerce.service.OrderPipeline;
+import com.sun.management.HotSpotDiagnosticMXBean;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of order placement with and without the {@code virtual-threads}
+ * profile: bursts of 1,000 concurrent orders through the real pipeline of
+ * {@link OrderPipeline}, {@code OrderService} saving each order and holding
+ * its stock, then {@link AsyncConfig#paymentExecutor} running the 500 ms
+ * payment and completing the order, on Postgres through Hikari.
+ *
+ * <p>{@code platform} applies the {@code prod} profile, serves requests from
+ * Tomcat's default 200 threads and pays on the bounded payment pool;
+ * {@code virtual} adds {@code virtual-threads} and gives every request and
+ * payment a virtual thread, as Spring Boot does with
+ * {@code spring.threads.virtual.enabled}. Pool size and connection timeout
+ * are whatever application.yml gives each profile. The scores that matter
+ * are {@code completed}, orders per second that went through payment, and
+ * {@code rejected}, orders per second refused for want of a connection or
+ * a payment slot; the primary score only counts bursts. Memory per
+ * in-flight request (heap, and for platform threads the reserved stack) is
+ * printed during setup. Needs Postgres as described for
+ * {@code BenchmarkDatabase}; {@code virtual} also needs a Java 21 build and
+ * JVM: {@code mvn -P benchmark,java21 verify -Djmh.include=VirtualThreadsBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 30)
+@Measurement(iterations = 3, time = 30)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class VirtualThreadsBenchmark {
+
+    private static final int ORDERS = 1000;
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    @Param({"platform", "virtual"})
+    private String mode;
+
+    private Executor requestExecutor;
+    private OrderPipeline pipeline;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Outcomes {
+        public long completed;
+        public long rejected;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            completed = 0;
+            rejected = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        boolean virtual = mode.equals("virtual");
+        if (virtual && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("Virtual threads need Java 21, run with -P benchmark,java21 on JDK 21");
+        }
+
+        pipeline = OrderPipeline.start(virtual ? List.of("prod", "virtual-threads") : List.of("prod"), Map.of());
+
+        if (virtual) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("request-");
+            executor.setVirtualThreads(true);
+            requestExecutor = executor;
+        } else {
+            ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+            executor.setCorePoolSize(TOMCAT_MAX_THREADS);
+            executor.setMaxPoolSize(TOMCAT_MAX_THREADS);
+            executor.setThreadNamePrefix("request-");
+            executor.initialize();
+            requestExecutor = executor;
+        }
+
+        printMemoryPerInFlightRequest(virtual ? ORDERS : TOMCAT_MAX_THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (requestExecutor instanceof ThreadPoolTaskExecutor executor) {
+            executor.shutdown();
+        }
+        pipeline.close();
+    }
+
+    @Benchmark
+    public void placeOrders(Outcomes outcomes) throws InterruptedException {
+        OrderPipeline.Outcome outcome = pipeline.placeOrders(requestExecutor, ORDERS);
+        outcomes.completed += outcome.completed();
+        outcomes.rejected += outcome.rejected();
+    }
+
+    /**
+     * Parks {@code inFlight} requests in the request executor and prints
+     * the heap they take and the thread stack they reserve, per request.
+     */
+    private void printMemoryPerInFlightRequest(int inFlight) throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        long heapBefore = usedHeapAfterGc(memory);
+
+        CountDownLatch started = new CountDownLatch(inFlight);
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < inFlight; i++) {
+            requestExecutor.execute(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        started.await();
+
+        long heapBytes = (usedHeapAfterGc(memory) - heapBefore) / inFlight;
+        int newThreads = ManagementFactory.getThreadMXBean().getThreadCount() - threadsBefore;
+        long stackBytes = newThreads * threadStackKilobytes() * 1024 / inFlight;
+        release.countDown();
+        System.out.printf("%n%s: %d requests in flight, %d bytes of heap and %d bytes of reserved thread stack "
+                + "per request%n", mode, inFlight, heapBytes, stackBytes);
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) {
+        System.gc();
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long threadStackKilobytes() {
+        String value = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class)
+                .getVMOption("ThreadStackSize").getValue();
+        long kilobytes = Long.parseLong(value);
+        // 0 means the platform default, 1 MB on 64-bit Linux and macOS
+        return kilobytes > 0 ? kilobytes : 1024;
+    }
+}
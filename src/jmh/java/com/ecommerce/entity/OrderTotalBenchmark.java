@@ -0,0 +1,42 @@
+package com.ecommerce.entity;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Order#calculateTotal()} over carts from a typical basket up to
+ * wholesale sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderTotalBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    private int cartSize;
+
+    private Order order;
+
+    @Setup
+    public void setUp() {
+        order = new Order();
+        for (int i = 0; i < cartSize; i++) {
+            OrderItem item = new OrderItem();
+            item.setOrder(order);
+            item.setQuantity(1 + i % 5);
+            item.setPrice(BigDecimal.valueOf(100 + i % 900, 2));
+            order.getOrderItems().add(item);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal calculateTotal() {
+        order.calculateTotal();
+        return order.getTotalAmount();
+    }
+}
@@ -0,0 +1,130 @@
+package com.ecommerce.repository;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+/**
+ * Postgres for the benchmarks that need a database. Connects with the same
+ * {@code DB_*} environment variables and defaults as the dev profile, but
+ * works in a scratch {@code jmh} schema, so benchmarks never touch the
+ * application's tables. Tables are created with the columns and indexes the
+ * entities map and dropped again by {@link #dropSchema}.
+ */
+public final class BenchmarkDatabase {
+
+    public static final String SCHEMA = "jmh";
+
+    private BenchmarkDatabase() {
+    }
+
+    static HikariDataSource open(int poolSize) {
+        HikariConfig config = config();
+        config.setMaximumPoolSize(poolSize);
+        config.setConnectionTimeout(30_000);
+        config.addDataSourceProperty("reWriteBatchedInserts", "true");
+        return open(config);
+    }
+
+    /**
+     * Connection settings for the scratch schema, with Hikari's defaults
+     * for everything else.
+     */
+    public static HikariConfig config() {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl("jdbc:postgresql://" + env("DB_HOST", "localhost") + ":" + env("DB_PORT", "5432")
+                + "/" + env("DB_NAME", "ecommerce_db") + "?currentSchema=" + SCHEMA);
+        config.setUsername(env("DB_USERNAME", "postgres"));
+        config.setPassword(env("DB_PASSWORD", "postgres"));
+        return config;
+    }
+
+    /**
+     * Opens a pool and recreates the scratch schema empty.
+     */
+    public static HikariDataSource open(HikariConfig config) {
+        HikariDataSource dataSource = new HikariDataSource(config);
+
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        jdbc.execute("CREATE SCHEMA " + SCHEMA);
+        return dataSource;
+    }
+
+    /**
+     * {@code categories} and {@code products} as mapped by the entities,
+     * with {@code count} available products spread over {@code categories}
+     * categories and prices between 1.00 and 2,000.00.
+     */
+    static void createCatalogue(JdbcTemplate jdbc, int categories, int count) {
+        jdbc.execute("CREATE TABLE categories (" +
+                "id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "name varchar(100) NOT NULL UNIQUE, description varchar(500))");
+        jdbc.execute("CREATE TABLE products (" +
+                "id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "name varchar(200) NOT NULL, description varchar(1000), price numeric(10, 2) NOT NULL, " +
+                "stock_quantity integer NOT NULL, reserved_quantity integer NOT NULL DEFAULT 0, " +
+                "category_id bigint NOT NULL REFERENCES categories, image_url varchar(500), " +
+                "created_at timestamp(6) NOT NULL, updated_at timestamp(6), version bigint, " +
+                "available boolean NOT NULL)");
+
+        jdbc.update("INSERT INTO categories (name) SELECT 'Category ' || c FROM generate_series(1, ?) c",
+                categories);
+        jdbc.update("INSERT INTO products (name, description, price, stock_quantity, category_id, " +
+                "created_at, updated_at, version, available) " +
+                "SELECT (ARRAY['Wireless','Compact','Premium','Classic','Portable','Smart','Outdoor','Studio'])[1 + i % 8]" +
+                " || ' ' || (ARRAY['Headphones','Speaker','Keyboard','Backpack','Camera','Lamp','Jacket','Monitor'])[1 + i / 8 % 8]" +
+                " || ' ' || i, " +
+                "'Product number ' || i || ' with a ' || (ARRAY['two-year warranty','recycled casing'," +
+                "'fast charging','waterproof finish'])[1 + i % 4], " +
+                "round((100 + (i * 7919) % 199901) / 100.0, 2), 100, 1 + i % ?, " +
+                "LOCALTIMESTAMP - (? - i) * interval '1 second', LOCALTIMESTAMP, 0, true " +
+                "FROM generate_series(1, ?) i", categories, count, count);
+
+        jdbc.execute("CREATE INDEX idx_product_name ON products (name)");
+        jdbc.execute("CREATE INDEX idx_product_category ON products (category_id)");
+        jdbc.execute("CREATE INDEX idx_product_price_id ON products (price, id)");
+        jdbc.execute("ANALYZE categories");
+        jdbc.execute("ANALYZE products");
+    }
+
+    /**
+     * Adds the full-text search column, triggers and GIN index of
+     * db/product-search.sql, which also backfills existing products.
+     */
+    static void installProductSearch(HikariDataSource dataSource) {
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                new ClassPathResource("db/product-search.sql"));
+        populator.setSeparator("@@");
+        populator.execute(dataSource);
+        new JdbcTemplate(dataSource).execute("ANALYZE products");
+    }
+
+    /**
+     * {@code orders} as mapped by the entity, with {@code count} orders one
+     * second apart. User ids are not enforced, the listings never join them.
+     */
+    static void createOrders(JdbcTemplate jdbc, int count) {
+        jdbc.execute("CREATE TABLE orders (" +
+                "id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, user_id bigint NOT NULL, " +
+                "total_amount numeric(10, 2) NOT NULL, status varchar(20) NOT NULL, " +
+                "idempotency_key varchar(150) UNIQUE, created_at timestamp(6) NOT NULL)");
+        jdbc.update("INSERT INTO orders (user_id, total_amount, status, created_at) " +
+                "SELECT 1 + i % 1000, round((100 + i % 50000) / 100.0, 2), 'CONFIRMED', " +
+                "LOCALTIMESTAMP - (? - i) * interval '1 second' FROM generate_series(1, ?) i", count, count);
+        jdbc.execute("CREATE INDEX idx_order_created_at_id ON orders (created_at, id)");
+        jdbc.execute("ANALYZE orders");
+    }
+
+    public static void dropSchema(HikariDataSource dataSource) {
+        new JdbcTemplate(dataSource).execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        dataSource.close();
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isEmpty() ? value : defaultValue;
+    }
+}
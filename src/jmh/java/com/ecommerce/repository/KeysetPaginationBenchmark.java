@@ -0,0 +1,131 @@
+package com.ecommerce.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Page 1 against page 10,000 of the product listing (by price) and the admin
+ * orders view (newest first), in both pagination modes, against Postgres
+ * (see {@link BenchmarkDatabase}).
+ *
+ * <p>{@code offset} runs what a {@code PageRequest} costs: the LIMIT/OFFSET
+ * page plus the count query. {@code keyset} runs the seek query of
+ * {@link ProductRepositoryImpl#findNextByFilters} and
+ * {@link OrderRepository#findNextIdsByCreatedAtDesc}, starting after the
+ * last row of the previous page as a {@code nextCursor} would, with no count.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeysetPaginationBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+    private static final int ROWS = 250_000;
+
+    // The optional filters are rendered as (? IS NULL OR ...) just as findByFilters has them
+    private static final String FILTERS = "p.available = true " +
+            "AND (CAST(? AS bigint) IS NULL OR p.category_id = ?) " +
+            "AND (CAST(? AS numeric) IS NULL OR p.price >= ?) " +
+            "AND (CAST(? AS numeric) IS NULL OR p.price <= ?)";
+    private static final String PRODUCT_COLUMNS = "SELECT p.id, p.name, p.description, p.price, " +
+            "p.stock_quantity, p.reserved_quantity, p.image_url, p.available, p.created_at, p.updated_at, " +
+            "c.id, c.name FROM products p JOIN categories c ON c.id = p.category_id WHERE ";
+    private static final String PRODUCT_OFFSET_SQL = PRODUCT_COLUMNS + FILTERS +
+            " ORDER BY p.price, p.id LIMIT ? OFFSET ?";
+    private static final String PRODUCT_COUNT_SQL = "SELECT COUNT(*) FROM products p WHERE " + FILTERS;
+    private static final String PRODUCT_FIRST_SQL = PRODUCT_COLUMNS + "p.available = true " +
+            "ORDER BY p.price, p.id LIMIT ?";
+    private static final String PRODUCT_SEEK_SQL = PRODUCT_COLUMNS + "p.available = true " +
+            "AND (p.price > ? OR (p.price = ? AND p.id > ?)) ORDER BY p.price, p.id LIMIT ?";
+
+    private static final String ORDER_OFFSET_SQL = "SELECT o.id FROM orders o " +
+            "ORDER BY o.created_at DESC, o.id DESC LIMIT ? OFFSET ?";
+    private static final String ORDER_COUNT_SQL = "SELECT COUNT(o.id) FROM orders o";
+    private static final String ORDER_FIRST_SQL = "SELECT o.id FROM orders o " +
+            "ORDER BY o.created_at DESC, o.id DESC LIMIT ?";
+    private static final String ORDER_SEEK_SQL = "SELECT o.id FROM orders o " +
+            "WHERE o.created_at < ? OR (o.created_at = ? AND o.id < ?) " +
+            "ORDER BY o.created_at DESC, o.id DESC LIMIT ?";
+
+    @Param({"1", "10000"})
+    private int page;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private long offset;
+    private BigDecimal lastPrice;
+    private long lastProductId;
+    private Timestamp lastCreatedAt;
+    private long lastOrderId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = BenchmarkDatabase.open(2);
+        jdbc = new JdbcTemplate(dataSource);
+        BenchmarkDatabase.createCatalogue(jdbc, 50, ROWS);
+        BenchmarkDatabase.createOrders(jdbc, ROWS);
+
+        offset = (long) (page - 1) * PAGE_SIZE;
+        if (page > 1) {
+            // The cursor a client holds after reading the previous page
+            Map<String, Object> product = jdbc.queryForMap(
+                    "SELECT price, id FROM products WHERE available = true ORDER BY price, id LIMIT 1 OFFSET ?",
+                    offset - 1);
+            lastPrice = (BigDecimal) product.get("price");
+            lastProductId = (Long) product.get("id");
+            Map<String, Object> order = jdbc.queryForMap(
+                    "SELECT created_at, id FROM orders ORDER BY created_at DESC, id DESC LIMIT 1 OFFSET ?",
+                    offset - 1);
+            lastCreatedAt = (Timestamp) order.get("created_at");
+            lastOrderId = (Long) order.get("id");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkDatabase.dropSchema(dataSource);
+    }
+
+    @Benchmark
+    public long productsOffset() {
+        List<Map<String, Object>> rows = jdbc.queryForList(PRODUCT_OFFSET_SQL,
+                null, null, null, null, null, null, PAGE_SIZE, offset);
+        Long total = jdbc.queryForObject(PRODUCT_COUNT_SQL, Long.class, null, null, null, null, null, null);
+        return rows.size() + total;
+    }
+
+    @Benchmark
+    public int productsKeyset() {
+        // One extra row tells whether there is a next page
+        List<Map<String, Object>> rows = page == 1
+                ? jdbc.queryForList(PRODUCT_FIRST_SQL, PAGE_SIZE + 1)
+                : jdbc.queryForList(PRODUCT_SEEK_SQL, lastPrice, lastPrice, lastProductId, PAGE_SIZE + 1);
+        return rows.size();
+    }
+
+    @Benchmark
+    public long ordersOffset() {
+        List<Long> ids = jdbc.queryForList(ORDER_OFFSET_SQL, Long.class, PAGE_SIZE, offset);
+        Long total = jdbc.queryForObject(ORDER_COUNT_SQL, Long.class);
+        return ids.size() + total;
+    }
+
+    @Benchmark
+    public int ordersKeyset() {
+        List<Long> ids = page == 1
+                ? jdbc.queryForList(ORDER_FIRST_SQL, Long.class, PAGE_SIZE + 1)
+                : jdbc.queryForList(ORDER_SEEK_SQL, Long.class, lastCreatedAt, lastCreatedAt, lastOrderId,
+                        PAGE_SIZE + 1);
+        return ids.size();
+    }
+}
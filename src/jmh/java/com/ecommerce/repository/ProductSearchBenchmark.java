@@ -0,0 +1,124 @@
+package com.ecommerce.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of a product search page on a 1M-product catalogue in Postgres
+ * (see {@link BenchmarkDatabase}), with the search column, triggers and GIN
+ * index of db/product-search.sql installed.
+ *
+ * <p>{@code search} runs what {@code ProductService.searchProducts} does for
+ * the first page: {@link ProductRepository#searchIds}, the products and
+ * categories for those ids, and {@link ProductRepository#countSearch}.
+ * {@code nameLike} is the same page done with a substring match on the name,
+ * the only text access path the catalogue had before, for comparison.
+ *
+ * <p>The queries are tsqueries as {@code ProductService.toPrefixTsQuery}
+ * builds them: a broad prefix matching one product in eight, two terms
+ * matching one in 64, and a term plus a number prefix matching a handful.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProductSearchBenchmark {
+
+    private static final int PRODUCTS = 1_000_000;
+    private static final int CATEGORIES = 50;
+    private static final int PAGE_SIZE = 20;
+
+    private static final String FILTERS = "AND p.available = true " +
+            "AND (CAST(:categoryId AS bigint) IS NULL OR p.category_id = :categoryId) " +
+            "AND (CAST(:minPrice AS numeric) IS NULL OR p.price >= :minPrice) " +
+            "AND (CAST(:maxPrice AS numeric) IS NULL OR p.price <= :maxPrice) ";
+    private static final String SEARCH_IDS_SQL = "SELECT p.id FROM products p, to_tsquery('english', :query) q " +
+            "WHERE p.search_vector @@ q " + FILTERS +
+            "ORDER BY ts_rank_cd(p.search_vector, q) DESC, p.id LIMIT :limit OFFSET 0";
+    private static final String COUNT_SEARCH_SQL = "SELECT COUNT(*) FROM products p " +
+            "WHERE p.search_vector @@ to_tsquery('english', :query) " + FILTERS;
+    private static final String PRODUCTS_BY_ID_SQL = "SELECT p.id, p.name, p.description, p.price, " +
+            "p.stock_quantity, p.reserved_quantity, p.image_url, p.available, p.created_at, p.updated_at, " +
+            "c.id, c.name FROM products p JOIN categories c ON c.id = p.category_id WHERE p.id IN (:ids)";
+    private static final String NAME_LIKE_SQL = "SELECT p.id FROM products p WHERE p.name ILIKE :pattern " +
+            FILTERS + "ORDER BY p.id LIMIT :limit OFFSET 0";
+    private static final String COUNT_NAME_LIKE_SQL = "SELECT COUNT(*) FROM products p " +
+            "WHERE p.name ILIKE :pattern " + FILTERS;
+
+    @Param({"headph:*", "wireless & headph:*", "warranty & 12345:*"})
+    private String query;
+
+    @Param({"none", "categoryAndPrice"})
+    private String filters;
+
+    private HikariDataSource dataSource;
+    private NamedParameterJdbcTemplate jdbc;
+    private Map<String, Object> searchParams;
+    private Map<String, Object> likeParams;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = BenchmarkDatabase.open(2);
+        JdbcTemplate template = new JdbcTemplate(dataSource);
+        BenchmarkDatabase.createCatalogue(template, CATEGORIES, PRODUCTS);
+        BenchmarkDatabase.installProductSearch(dataSource);
+        jdbc = new NamedParameterJdbcTemplate(template);
+
+        boolean filtered = filters.equals("categoryAndPrice");
+        Long categoryId = filtered ? 7L : null;
+        BigDecimal minPrice = filtered ? new BigDecimal("100.00") : null;
+        BigDecimal maxPrice = filtered ? new BigDecimal("500.00") : null;
+        searchParams = params(categoryId, minPrice, maxPrice);
+        searchParams.put("query", query);
+        likeParams = params(categoryId, minPrice, maxPrice);
+        // The last term, the one a prefix query completes, as a substring
+        String[] terms = query.replace(":*", "").split(" & ");
+        likeParams.put("pattern", "%" + terms[terms.length - 1] + "%");
+
+        System.out.printf("%n'%s' (%s) matches %d products%n", query, filters,
+                jdbc.queryForObject(COUNT_SEARCH_SQL, searchParams, Long.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkDatabase.dropSchema(dataSource);
+    }
+
+    @Benchmark
+    public long search() {
+        List<Long> ids = jdbc.queryForList(SEARCH_IDS_SQL, searchParams, Long.class);
+        return loadPage(ids) + jdbc.queryForObject(COUNT_SEARCH_SQL, searchParams, Long.class);
+    }
+
+    @Benchmark
+    public long nameLike() {
+        List<Long> ids = jdbc.queryForList(NAME_LIKE_SQL, likeParams, Long.class);
+        return loadPage(ids) + jdbc.queryForObject(COUNT_NAME_LIKE_SQL, likeParams, Long.class);
+    }
+
+    private int loadPage(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return jdbc.queryForList(PRODUCTS_BY_ID_SQL, Map.of("ids", ids)).size();
+    }
+
+    private static Map<String, Object> params(Long categoryId, BigDecimal minPrice, BigDecimal maxPrice) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("categoryId", categoryId);
+        params.put("minPrice", minPrice);
+        params.put("maxPrice", maxPrice);
+        params.put("limit", PAGE_SIZE);
+        return params;
+    }
+}
@@ -0,0 +1,116 @@
+package com.ecommerce.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 200 buyers of the same product, one unit each, against Postgres (see
+ * {@link BenchmarkDatabase} for the connection settings).
+ *
+ * <p>{@code guardedDecrement} is the single conditional UPDATE that
+ * {@link ProductRepository#decrementStock} and
+ * {@link ProductRepositoryImpl#batchDecrementStock} issue.
+ * {@code versionedReadModifyWrite} is the path it replaced: read the row,
+ * then write the new stock back under the {@code @Version} check, failing
+ * the purchase when another buyer got there first. The {@code conflicts}
+ * counter reports those failures. After every iteration the stock left in
+ * the row is checked against the units sold, so a lost update fails the run.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(200)
+@State(Scope.Benchmark)
+public class StockDecrementBenchmark {
+
+    private static final int INITIAL_STOCK = 100_000_000;
+    // Below Postgres' default max_connections; the 200 threads queue for connections as requests do
+    private static final int POOL_SIZE = 50;
+
+    private static final String DECREMENT_SQL = "UPDATE products SET stock_quantity = stock_quantity - ?, " +
+            "available = (stock_quantity - ? > 0), version = version + 1, updated_at = LOCALTIMESTAMP " +
+            "WHERE id = ? AND stock_quantity - reserved_quantity >= ?";
+    private static final String READ_SQL = "SELECT stock_quantity, version FROM products WHERE id = ?";
+    private static final String VERSIONED_WRITE_SQL = "UPDATE products SET stock_quantity = ?, available = ?, " +
+            "version = version + 1, updated_at = LOCALTIMESTAMP WHERE id = ? AND version = ?";
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbc;
+    private long productId;
+    private final AtomicLong sold = new AtomicLong();
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcomes {
+        public long purchases;
+        public long conflicts;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            purchases = 0;
+            conflicts = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dataSource = BenchmarkDatabase.open(POOL_SIZE);
+        jdbc = new JdbcTemplate(dataSource);
+        BenchmarkDatabase.createCatalogue(jdbc, 1, 1);
+        productId = jdbc.queryForObject("SELECT id FROM products", Long.class);
+    }
+
+    @Setup(Level.Iteration)
+    public void restock() {
+        jdbc.update("UPDATE products SET stock_quantity = ?, reserved_quantity = 0, available = true WHERE id = ?",
+                INITIAL_STOCK, productId);
+        sold.set(0);
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkNoLostUpdates() {
+        int left = jdbc.queryForObject("SELECT stock_quantity FROM products WHERE id = ?", Integer.class,
+                productId);
+        if (INITIAL_STOCK - left != sold.get()) {
+            throw new IllegalStateException("Lost updates: sold " + sold.get() + " units but stock went down by "
+                    + (INITIAL_STOCK - left));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkDatabase.dropSchema(dataSource);
+    }
+
+    @Benchmark
+    public void guardedDecrement(Outcomes outcomes) {
+        if (jdbc.update(DECREMENT_SQL, 1, 1, productId, 1) == 1) {
+            sold.incrementAndGet();
+            outcomes.purchases++;
+        }
+    }
+
+    @Benchmark
+    public void versionedReadModifyWrite(Outcomes outcomes) {
+        Map<String, Object> row = jdbc.queryForMap(READ_SQL, productId);
+        int stock = (Integer) row.get("stock_quantity");
+        long version = (Long) row.get("version");
+        if (stock < 1) {
+            return;
+        }
+        if (jdbc.update(VERSIONED_WRITE_SQL, stock - 1, stock - 1 > 0, productId, version) == 1) {
+            sold.incrementAndGet();
+            outcomes.purchases++;
+        } else {
+            // ObjectOptimisticLockingFailureException in the JPA version: the purchase fails
+            outcomes.conflicts++;
+        }
+    }
+}
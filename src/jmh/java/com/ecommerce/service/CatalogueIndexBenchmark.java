@@ -0,0 +1,92 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.ProductFacets;
+import com.ecommerce.dto.ProductIndexEntry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * Listing queries and facet counts against a loaded {@link CatalogueIndex},
+ * and the cost of merging a single changed product into it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CatalogueIndexBenchmark {
+
+    private static final int CATEGORIES = 50;
+
+    @Param({"100000", "1000000"})
+    private int products;
+
+    private CatalogueIndex index;
+    private Pageable firstPageById;
+    private Pageable deepPageByPrice;
+    private Pageable pageByNewest;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+    private long nextPrice;
+
+    @Setup
+    public void setUp() {
+        index = new CatalogueIndex(null, null, null);
+        ReflectionTestUtils.setField(index, "priceBuckets",
+                new BigDecimal[] {new BigDecimal("25"), new BigDecimal("50"), new BigDecimal("100"),
+                        new BigDecimal("250"), new BigDecimal("500"), new BigDecimal("1000")});
+
+        Random random = new Random(42);
+        LocalDateTime start = LocalDateTime.now().minusYears(1);
+        index.load(LongStream.rangeClosed(1, products).mapToObj(id -> new ProductIndexEntry(
+                id,
+                (long) random.nextInt(CATEGORIES) + 1,
+                BigDecimal.valueOf(random.nextInt(200000) + 100, 2),
+                start.plusSeconds(id))));
+
+        firstPageById = PageRequest.of(0, 20, Sort.by("id"));
+        deepPageByPrice = PageRequest.of(50, 20, Sort.by("price").descending());
+        pageByNewest = PageRequest.of(0, 20, Sort.by("createdAt").descending());
+        minPrice = new BigDecimal("100");
+        maxPrice = new BigDecimal("250");
+    }
+
+    @Benchmark
+    public CatalogueIndex.Hits allProductsFirstPage() {
+        return index.find(null, null, null, firstPageById);
+    }
+
+    @Benchmark
+    public CatalogueIndex.Hits categoryPriceRangeDeepPage() {
+        return index.find(7L, minPrice, maxPrice, deepPageByPrice);
+    }
+
+    @Benchmark
+    public CatalogueIndex.Hits priceRangeNewestFirst() {
+        return index.find(null, minPrice, maxPrice, pageByNewest);
+    }
+
+    @Benchmark
+    public ProductFacets facets() {
+        return index.facets(7L, minPrice, maxPrice);
+    }
+
+    @Benchmark
+    public Object repriceOneProduct() {
+        long price = 100 + (nextPrice++ % 200000);
+        ProductIndexEntry changed = new ProductIndexEntry(1L, 1L, BigDecimal.valueOf(price, 2),
+                LocalDateTime.now().minusYears(1));
+        return index.apply(List.of(1L), List.of(changed));
+    }
+}
@@ -0,0 +1,81 @@
+package com.ecommerce.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Order throughput against the size of the JDBC pool, through the real
+ * pipeline of {@link OrderPipeline} with the {@code prod} profile: bursts of
+ * 500 concurrent orders from Tomcat's default 200 request threads, each
+ * placed by {@link OrderService} and paid by {@link OrderPaymentProcessor}
+ * on the payment executor.
+ *
+ * <p>The 500 ms payment runs outside any transaction, so no connection is
+ * held while it waits and {@code completed} should stay flat from 5
+ * connections up: the payment executor, not the pool, sets the pace.
+ * Throughput that grows with {@code poolSize} means something holds a
+ * connection across the payment again. {@code rejected} counts orders per
+ * second that timed out waiting for a connection or a payment slot; the
+ * primary score only counts bursts. Needs Postgres as described for
+ * {@code BenchmarkDatabase}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 30)
+@Measurement(iterations = 3, time = 30)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConnectionPoolSizeBenchmark {
+
+    private static final int ORDERS = 500;
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    @Param({"5", "10", "20", "40"})
+    private int poolSize;
+
+    private ThreadPoolTaskExecutor requestExecutor;
+    private OrderPipeline pipeline;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Outcomes {
+        public long completed;
+        public long rejected;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            completed = 0;
+            rejected = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        pipeline = OrderPipeline.start(List.of("prod"), Map.of(
+                "spring.datasource.hikari.maximum-pool-size", poolSize,
+                "spring.datasource.hikari.minimum-idle", poolSize));
+
+        requestExecutor = new ThreadPoolTaskExecutor();
+        requestExecutor.setCorePoolSize(TOMCAT_MAX_THREADS);
+        requestExecutor.setMaxPoolSize(TOMCAT_MAX_THREADS);
+        requestExecutor.setThreadNamePrefix("request-");
+        requestExecutor.initialize();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        requestExecutor.shutdown();
+        pipeline.close();
+    }
+
+    @Benchmark
+    public void placeOrders(Outcomes outcomes) throws InterruptedException {
+        OrderPipeline.Outcome outcome = pipeline.placeOrders(requestExecutor, ORDERS);
+        outcomes.completed += outcome.completed();
+        outcomes.rejected += outcome.rejected();
+    }
+}
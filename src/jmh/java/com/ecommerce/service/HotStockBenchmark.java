@@ -0,0 +1,156 @@
+package com.ecommerce.service;
+
+import com.ecommerce.repository.ProductRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisClientConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Flash-sale load on {@link HotStockService}: 200 buyers reserving and
+ * confirming one unit each of the same hot product, against a real Redis
+ * ({@code REDIS_HOST}, {@code REDIS_PORT}, using database 15, which is
+ * flushed). Postgres is an in-memory stand-in for {@link ProductRepository},
+ * so the score is the Redis path alone; write-behind flushes run every
+ * second as they do in the application.
+ *
+ * <p>Each iteration sells a stock of {@link #STOCK} units. {@code reserved}
+ * counts units sold and {@code soldOut} attempts refused once the stock is
+ * gone; the UPDATE batches the flushes sent to Postgres are printed. After
+ * every iteration the stock written to Postgres and the Redis counter are
+ * checked against the units sold, so an oversell or a lost deduction fails
+ * the run.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(200)
+@State(Scope.Benchmark)
+public class HotStockBenchmark {
+
+    private static final int STOCK = 1_000_000;
+    private static final long PRODUCT_ID = 1L;
+    private static final int REDIS_DATABASE = 15;
+
+    private JedisConnectionFactory connectionFactory;
+    private StringRedisTemplate redisTemplate;
+    private HotStockService hotStockService;
+    private ScheduledExecutorService flusher;
+    private final AtomicInteger postgresStock = new AtomicInteger();
+    private final AtomicLong stockWrites = new AtomicLong();
+    private final AtomicLong sold = new AtomicLong();
+    private final AtomicLong orderIds = new AtomicLong();
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Outcomes {
+        public long reserved;
+        public long soldOut;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            reserved = 0;
+            soldOut = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RedisStandaloneConfiguration redis = new RedisStandaloneConfiguration(
+                env("REDIS_HOST", "localhost"), Integer.parseInt(env("REDIS_PORT", "6379")));
+        redis.setDatabase(REDIS_DATABASE);
+        JedisPoolConfig pool = new JedisPoolConfig();
+        pool.setMaxTotal(64);
+        pool.setMaxIdle(64);
+        connectionFactory = new JedisConnectionFactory(redis,
+                JedisClientConfiguration.builder().usePooling().poolConfig(pool).build());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+
+        // Postgres: one row whose stock the write-behind batches decrement
+        ProductRepository productRepository = mock(ProductRepository.class);
+        when(productRepository.findStockQuantityById(anyLong())).thenAnswer(invocation -> postgresStock.get());
+        when(productRepository.batchDecrementStock(anyMap())).thenAnswer(invocation -> {
+            Map<Long, Integer> quantities = invocation.getArgument(0);
+            postgresStock.addAndGet(-quantities.getOrDefault(PRODUCT_ID, 0));
+            stockWrites.incrementAndGet();
+            return Set.of();
+        });
+
+        hotStockService = new HotStockService(redisTemplate, productRepository, new NoOpCacheManager(),
+                event -> { }, mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(hotStockService, "enabled", true);
+    }
+
+    @Setup(Level.Iteration)
+    public void startSale() {
+        redisTemplate.execute(connection -> {
+            connection.serverCommands().flushDb();
+            return null;
+        }, true);
+        postgresStock.set(STOCK);
+        sold.set(0);
+        hotStockService.enable(PRODUCT_ID);
+        flusher = Executors.newSingleThreadScheduledExecutor();
+        flusher.scheduleWithFixedDelay(hotStockService::flushPending, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @TearDown(Level.Iteration)
+    public void checkNoOversell() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(30, TimeUnit.SECONDS);
+        hotStockService.flushPending();
+        System.out.printf("%n%d units sold, written to Postgres in %d batches%n",
+                sold.get(), stockWrites.getAndSet(0));
+
+        long expected = STOCK - sold.get();
+        String available = redisTemplate.opsForValue().get("stock:available:" + PRODUCT_ID);
+        if (expected < 0 || postgresStock.get() != expected || Long.parseLong(available) != expected) {
+            throw new IllegalStateException("Sold " + sold.get() + " of " + STOCK + " units but Postgres has "
+                    + postgresStock.get() + " and Redis " + available + " left");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connectionFactory.destroy();
+    }
+
+    @Benchmark
+    public void reserveAndConfirm(Outcomes outcomes) {
+        long orderId = orderIds.incrementAndGet();
+        if (hotStockService.reserve(orderId, Map.of(PRODUCT_ID, 1)) != null) {
+            outcomes.soldOut++;
+            return;
+        }
+        hotStockService.confirm(orderId);
+        sold.incrementAndGet();
+        outcomes.reserved++;
+    }
+
+    private static String env(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null && !value.isEmpty() ? value : defaultValue;
+    }
+}
@@ -0,0 +1,101 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.OrderDTO;
+import com.ecommerce.dto.ProductDTO;
+import com.ecommerce.entity.Category;
+import com.ecommerce.entity.Order;
+import com.ecommerce.entity.OrderItem;
+import com.ecommerce.entity.Payment;
+import com.ecommerce.entity.Product;
+import com.ecommerce.entity.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO mapping for orders and products, on fully initialized
+ * entities so only the mapping itself is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MappingBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int itemsPerOrder;
+
+    private OrderService orderService;
+    private ProductMapper productMapper;
+    private Order order;
+    private Product product;
+
+    @Setup
+    public void setUp() {
+        orderService = new OrderService(null, null, null, null, null, null, null, null);
+        productMapper = new ProductMapper();
+
+        Category category = new Category();
+        category.setId(1L);
+        category.setName("Electronics");
+
+        User user = new User();
+        user.setId(1L);
+        user.setUsername("customer");
+
+        order = new Order();
+        order.setId(1L);
+        order.setUser(user);
+        order.setStatus(Order.OrderStatus.CONFIRMED);
+        order.setCreatedAt(LocalDateTime.now());
+
+        for (int i = 0; i < itemsPerOrder; i++) {
+            Product itemProduct = newProduct((long) i + 1, category);
+            OrderItem item = new OrderItem();
+            item.setId((long) i + 1);
+            item.setOrder(order);
+            item.setProduct(itemProduct);
+            item.setQuantity(2);
+            item.setPrice(itemProduct.getPrice());
+            order.getOrderItems().add(item);
+        }
+        order.calculateTotal();
+
+        Payment payment = new Payment();
+        payment.setOrder(order);
+        payment.setAmount(order.getTotalAmount());
+        payment.setPaymentMethod("CREDIT_CARD");
+        payment.setStatus(Payment.PaymentStatus.SUCCESS);
+        order.setPayment(payment);
+
+        product = newProduct(1L, category);
+    }
+
+    @Benchmark
+    public OrderDTO orderToDTO() {
+        return orderService.mapToDTO(order);
+    }
+
+    @Benchmark
+    public ProductDTO productToDTO() {
+        return productMapper.toDTO(product);
+    }
+
+    private static Product newProduct(Long id, Category category) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName("Product " + id);
+        product.setDescription("Description of product " + id);
+        product.setPrice(new BigDecimal("19.99"));
+        product.setStockQuantity(100);
+        product.setCategory(category);
+        product.setAvailable(true);
+        product.setCreatedAt(LocalDateTime.now());
+        product.setUpdatedAt(LocalDateTime.now());
+        return product;
+    }
+}
@@ -0,0 +1,340 @@
+package com.ecommerce.service;
+
+import com.ecommerce.cache.CacheGenerations;
+import com.ecommerce.cache.TwoLevelCacheManager;
+import com.ecommerce.config.AsyncConfig;
+import com.ecommerce.dto.OrderItemRequest;
+import com.ecommerce.dto.OrderRequest;
+import com.ecommerce.metrics.OrderMetrics;
+import com.ecommerce.repository.BenchmarkDatabase;
+import com.ecommerce.repository.OrderRepository;
+import com.ecommerce.security.UserDetailsImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * The order pipeline as the application wires it, for the load benchmarks:
+ * {@link OrderService} places orders and {@link OrderPaymentProcessor} pays
+ * for them on {@link AsyncConfig#paymentExecutor}, with Spring transactions,
+ * Hibernate and a Hikari pool, against the scratch schema of
+ * {@link BenchmarkDatabase}. Pool, payment executor and virtual thread
+ * settings are read from application.yml for the given profiles, so each
+ * profile runs with the limits it ships with. The payment gateway is
+ * {@link PaymentService}'s simulated 500 ms call. Redis is left out: hot
+ * stock is off and cache evictions go to a mock.
+ */
+public final class OrderPipeline implements AutoCloseable {
+
+    private static final int PRODUCTS = 1000;
+    private static final int STOCK = 1_000_000_000;
+
+    private final AnnotationConfigApplicationContext context;
+    private final OrderService orderService;
+    private final PaymentTracker payments;
+    private final JdbcTemplate jdbc;
+    private final MeterRegistry meterRegistry;
+    private final Authentication customer;
+
+    private OrderPipeline(AnnotationConfigApplicationContext context) {
+        this.context = context;
+        this.orderService = context.getBean(OrderService.class);
+        this.payments = context.getBean("paymentExecutor", PaymentTracker.class);
+        this.jdbc = context.getBean(JdbcTemplate.class);
+        this.meterRegistry = context.getBean(MeterRegistry.class);
+
+        jdbc.update("INSERT INTO categories (name) VALUES ('Benchmark')");
+        jdbc.update("INSERT INTO products (name, price, stock_quantity, reserved_quantity, category_id, " +
+                "created_at, updated_at, version, available) " +
+                "SELECT 'Product ' || i, 19.99, ?, 0, (SELECT id FROM categories), " +
+                "LOCALTIMESTAMP, LOCALTIMESTAMP, 0, true FROM generate_series(1, ?) i", STOCK, PRODUCTS);
+        Long userId = jdbc.queryForObject("INSERT INTO users (username, email, password, created_at, " +
+                "updated_at, enabled) VALUES ('benchmark', 'benchmark@example.com', '-', LOCALTIMESTAMP, " +
+                "LOCALTIMESTAMP, true) RETURNING id", Long.class);
+        UserDetailsImpl user = new UserDetailsImpl(userId, "benchmark", "benchmark@example.com", "-", List.of());
+        this.customer = new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+    }
+
+    /**
+     * Starts the pipeline on a fresh scratch schema.
+     *
+     * @param profiles  profiles of application.yml to apply, e.g. {@code prod}
+     *                  and {@code virtual-threads}
+     * @param overrides properties that win over the profiles, e.g.
+     *                  {@code spring.datasource.hikari.maximum-pool-size}
+     */
+    public static OrderPipeline start(List<String> profiles, Map<String, Object> overrides) throws IOException {
+        // Per-order INFO logging would dominate the measurement
+        LoggingSystem.get(OrderPipeline.class.getClassLoader())
+                .setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.WARN);
+
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        MutablePropertySources sources = context.getEnvironment().getPropertySources();
+        for (PropertySource<?> document : applicationYml(profiles)) {
+            sources.addLast(document);
+        }
+        sources.addFirst(new MapPropertySource("benchmark", overrides));
+        context.register(PipelineConfiguration.class);
+        context.refresh();
+        return new OrderPipeline(context);
+    }
+
+    /**
+     * Places {@code count} orders of one to three lines at once, each from
+     * its own request on {@code requestExecutor}, and waits until every
+     * order placed has been through the payment step.
+     */
+    public Outcome placeOrders(Executor requestExecutor, int count) throws InterruptedException {
+        long lastOrderId = jdbc.queryForObject("SELECT coalesce(max(id), 0) FROM orders", Long.class);
+        double declinedBefore = declinedPayments();
+
+        CountDownLatch placed = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            requestExecutor.execute(() -> {
+                SecurityContextHolder.getContext().setAuthentication(customer);
+                try {
+                    orderService.placeOrder(randomOrder(), null);
+                } catch (RuntimeException e) {
+                    // Counted as rejected below: no order, or one that was cancelled
+                } finally {
+                    SecurityContextHolder.clearContext();
+                    placed.countDown();
+                }
+            });
+        }
+        placed.await();
+        payments.awaitIdle();
+
+        Map<String, Object> statuses = jdbc.queryForMap("SELECT " +
+                "count(*) FILTER (WHERE o.status = 'CONFIRMED') AS confirmed, " +
+                "count(*) FILTER (WHERE o.status = 'CANCELLED' AND p.status = 'FAILED') AS failed " +
+                "FROM orders o LEFT JOIN payments p ON p.order_id = o.id WHERE o.id > ?", lastOrderId);
+        long confirmed = ((Number) statuses.get("confirmed")).longValue();
+        // Aborted orders are recorded as FAILED payments too; the gateway's own count tells them apart
+        long declined = Math.min(((Number) statuses.get("failed")).longValue(),
+                Math.round(declinedPayments() - declinedBefore));
+        return new Outcome(confirmed + declined, count - confirmed - declined);
+    }
+
+    @Override
+    public void close() {
+        HikariDataSource dataSource = context.getBean(HikariDataSource.class);
+        context.close();
+        BenchmarkDatabase.dropSchema(dataSource);
+    }
+
+    private double declinedPayments() {
+        return meterRegistry.counter("payments.authorizations", "outcome", "failure").count();
+    }
+
+    private static OrderRequest randomOrder() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<OrderItemRequest> items = new ArrayList<>();
+        random.ints(1, PRODUCTS + 1).distinct().limit(1 + random.nextInt(3))
+                .forEach(productId -> items.add(new OrderItemRequest((long) productId, 1 + random.nextInt(3))));
+        OrderRequest request = new OrderRequest();
+        request.setItems(items);
+        request.setPaymentMethod("CARD");
+        return request;
+    }
+
+    /**
+     * The documents of application.yml that apply to {@code profiles},
+     * later documents first so they win, as Spring Boot orders them.
+     */
+    private static List<PropertySource<?>> applicationYml(List<String> profiles) throws IOException {
+        List<PropertySource<?>> active = new ArrayList<>();
+        for (PropertySource<?> document : new YamlPropertySourceLoader()
+                .load("application.yml", new ClassPathResource("application.yml"))) {
+            Object profile = document.getProperty("spring.config.activate.on-profile");
+            if (profile == null || profiles.contains(profile.toString())) {
+                active.add(0, document);
+            }
+        }
+        return active;
+    }
+
+    /**
+     * Orders that went through the whole pipeline, confirmed or declined by
+     * the gateway, and orders that did not: refused for want of a
+     * connection or a payment slot, or cancelled after an error.
+     */
+    public record Outcome(long completed, long rejected) {
+    }
+
+    /**
+     * Wraps the payment executor to know when every payment handed to it
+     * has finished. A payment the executor refuses is not counted.
+     */
+    static final class PaymentTracker implements Executor, DisposableBean {
+
+        private final Executor delegate;
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        PaymentTracker(Executor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            inFlight.incrementAndGet();
+            try {
+                delegate.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        finished();
+                    }
+                });
+            } catch (RuntimeException e) {
+                finished();
+                throw e;
+            }
+        }
+
+        synchronized void awaitIdle() throws InterruptedException {
+            while (inFlight.get() > 0) {
+                wait();
+            }
+        }
+
+        private synchronized void finished() {
+            if (inFlight.decrementAndGet() == 0) {
+                notifyAll();
+            }
+        }
+
+        @Override
+        public void destroy() throws Exception {
+            if (delegate instanceof DisposableBean disposable) {
+                disposable.destroy();
+            } else if (delegate instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    @Configuration
+    @EnableTransactionManagement
+    @EnableJpaRepositories(basePackageClasses = OrderRepository.class)
+    @Import({AsyncConfig.class, OrderMetrics.class, HotStockService.class, InventoryService.class,
+            PaymentService.class, OrderService.class, OrderPaymentProcessor.class})
+    static class PipelineConfiguration {
+
+        // Closed by BenchmarkDatabase.dropSchema once the schema is dropped
+        @Bean(destroyMethod = "")
+        HikariDataSource dataSource(Environment environment) {
+            HikariConfig config = BenchmarkDatabase.config();
+            Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(config));
+            return BenchmarkDatabase.open(config);
+        }
+
+        @Bean
+        JdbcTemplate jdbcTemplate(DataSource dataSource) {
+            return new JdbcTemplate(dataSource);
+        }
+
+        @Bean
+        LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource, Environment environment) {
+            Map<String, Object> properties = new HashMap<>(Binder.get(environment)
+                    .bind("spring.jpa.properties", Bindable.mapOf(String.class, String.class))
+                    .orElse(Map.of()));
+            properties.put("hibernate.hbm2ddl.auto", "create");
+            properties.put("hibernate.default_schema", BenchmarkDatabase.SCHEMA);
+            // The naming Spring Boot applies, which the native SQL relies on
+            properties.put("hibernate.physical_naming_strategy", CamelCaseToUnderscoresNamingStrategy.class.getName());
+            properties.put("hibernate.implicit_naming_strategy", SpringImplicitNamingStrategy.class.getName());
+
+            LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+            factory.setDataSource(dataSource);
+            factory.setPackagesToScan("com.ecommerce.entity");
+            factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+            factory.setJpaPropertyMap(properties);
+            return factory;
+        }
+
+        @Bean
+        JpaTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+            return new JpaTransactionManager(entityManagerFactory);
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper().findAndRegisterModules();
+        }
+
+        @Bean
+        StringRedisTemplate redisTemplate() {
+            return mock(StringRedisTemplate.class);
+        }
+
+        @Bean
+        TwoLevelCacheManager cacheManager() {
+            return mock(TwoLevelCacheManager.class);
+        }
+
+        @Bean
+        CacheGenerations cacheGenerations() {
+            return mock(CacheGenerations.class);
+        }
+
+        @Bean
+        static BeanPostProcessor paymentTracking() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return beanName.equals("paymentExecutor") ? new PaymentTracker((Executor) bean) : bean;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.ecommerce.cache;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Generation counters for versioned cache keys. Caches whose entries cannot
+ * be evicted one by one (lists, listings) put the current generation of
+ * their namespace into the key; a write bumps the generation so the old
+ * entries are simply never read again and expire on their TTL.
+ *
+ * <p>Generations are shared through Redis and cached on each node for
+ * {@link #LOCAL_REFRESH_MILLIS}, so other nodes pick up a bump within that
+ * window. While the {@link RedisCircuitBreaker} is open each node keeps and
+ * bumps its own generations until it is back.
+ */
+@Component
+@RequiredArgsConstructor
+public class CacheGenerations {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheGenerations.class);
+    private static final String KEY_PREFIX = "cache:generation:";
+    private static final long LOCAL_REFRESH_MILLIS = 1000;
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisCircuitBreaker circuitBreaker;
+    private final ConcurrentMap<String, Generation> localGenerations = new ConcurrentHashMap<>();
+
+    /**
+     * After an outage the shared counter is moved past every generation this
+     * node used locally, so no node can read entries cached under a
+     * generation that was bumped while Redis was down.
+     */
+    @PostConstruct
+    void bumpAllOnRecovery() {
+        circuitBreaker.onRecovery(() -> localGenerations.forEach(
+                (namespace, generation) -> increment(namespace, generation.value() + 1)));
+    }
+
+    public long current(String namespace) {
+        Generation generation = localGenerations.get(namespace);
+        long now = System.currentTimeMillis();
+        if (generation != null && (now - generation.readAt() < LOCAL_REFRESH_MILLIS || circuitBreaker.isOpen())) {
+            return generation.value();
+        }
+
+        long previous = generation != null ? generation.value() : 0L;
+        long value = previous;
+        try {
+            String stored = circuitBreaker.execute(
+                    () -> redisTemplate.opsForValue().get(KEY_PREFIX + namespace),
+                    () -> Long.toString(previous));
+            value = stored != null ? Long.parseLong(stored) : 0L;
+        } catch (Exception e) {
+            logger.warn("Could not read cache generation for '{}': {}", namespace, e.getMessage());
+        }
+        localGenerations.put(namespace, new Generation(value, now));
+        return value;
+    }
+
+    /**
+     * Bumps the generation of a namespace. Inside a transaction the bump is
+     * deferred until commit, so readers cannot cache pre-commit data under
+     * the new generation.
+     */
+    public void bump(String namespace) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    increment(namespace, 1);
+                }
+            });
+        } else {
+            increment(namespace, 1);
+        }
+    }
+
+    private void increment(String namespace, long delta) {
+        try {
+            Long value = circuitBreaker.execute(
+                    () -> redisTemplate.opsForValue().increment(KEY_PREFIX + namespace, delta),
+                    () -> null);
+            if (value != null) {
+                localGenerations.put(namespace, new Generation(value, System.currentTimeMillis()));
+            } else {
+                // Redis is unavailable: move on locally, the shared counter is bumped on recovery
+                localGenerations.compute(namespace, (key, generation) -> new Generation(
+                        generation != null ? generation.value() + 1 : 1L, System.currentTimeMillis()));
+            }
+        } catch (Exception e) {
+            logger.warn("Could not bump cache generation for '{}': {}", namespace, e.getMessage());
+            localGenerations.remove(namespace);
+        }
+    }
+
+    private record Generation(long value, long readAt) {
+    }
+}
@@ -0,0 +1,171 @@
+package com.ecommerce.cache;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.regex.Pattern;
+
+/**
+ * Binary value serializer for the Redis caches: Jackson Smile instead of
+ * JSON, with values of at least {@code compressionThreshold} bytes
+ * compressed with LZ4 when that makes them smaller.
+ *
+ * <p>Every value starts with a three byte header: {@link #MAGIC}, the format
+ * {@link #VERSION} and a flags byte. Values without this header, or written
+ * by another version, are read as a miss and overwritten by the next load,
+ * so entries left by an older release are never misread during a rolling
+ * deploy. Bump {@link #VERSION} whenever cached classes change in a way the
+ * previous release cannot read.
+ */
+public class CompactCacheSerializer implements RedisSerializer<Object> {
+
+    static final byte MAGIC = (byte) 0xCA;
+    static final byte VERSION = 1;
+
+    private static final byte FLAG_LZ4 = 1;
+    private static final int HEADER_LENGTH = 3;
+    private static final int MAX_UNCOMPRESSED_LENGTH = 64 * 1024 * 1024;
+
+    /**
+     * The only classes a type id in a cached value may name: the DTOs, the
+     * collections holding them and the value types inside them. Anything
+     * else fails to decode, so a value planted in Redis cannot instantiate
+     * arbitrary classes.
+     */
+    private static final PolymorphicTypeValidator CACHED_TYPES = BasicPolymorphicTypeValidator.builder()
+            .allowIfSubType("com.ecommerce.dto.")
+            // Top-level java.util classes only: collections, maps and their immutable wrappers
+            .allowIfSubType(Pattern.compile("java\\.util\\.[A-Za-z]+(\\$[A-Za-z0-9]+)*"))
+            .allowIfSubType(Pattern.compile("java\\.lang\\.(Long|Integer|Short|Byte|Double|Float|Boolean|String)"))
+            .allowIfSubType(Pattern.compile("java\\.math\\.(BigDecimal|BigInteger)"))
+            .allowIfSubType(Pattern.compile("java\\.time\\.[A-Za-z]+"))
+            .allowIfSubTypeIsArray()
+            .build();
+
+    private final ObjectMapper mapper;
+    private final int compressionThreshold;
+    private final LZ4Compressor compressor;
+    private final LZ4FastDecompressor decompressor;
+
+    /**
+     * @param compressionThreshold smallest encoded size in bytes worth
+     *                             compressing; 0 disables compression
+     */
+    public CompactCacheSerializer(int compressionThreshold) {
+        SmileFactory factory = SmileFactory.builder()
+                .disable(SmileGenerator.Feature.WRITE_HEADER)
+                // Type ids repeat once per element of a cached list
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+        this.mapper = SmileMapper.builder(factory)
+                .addModule(new JavaTimeModule())
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .activateDefaultTyping(CACHED_TYPES, ObjectMapper.DefaultTyping.EVERYTHING, JsonTypeInfo.As.PROPERTY)
+                .build();
+        this.compressionThreshold = compressionThreshold;
+        LZ4Factory lz4 = LZ4Factory.fastestInstance();
+        this.compressor = lz4.fastCompressor();
+        this.decompressor = lz4.fastDecompressor();
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+
+        byte[] encoded;
+        try {
+            encoded = mapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new SerializationException("Could not encode cache value: " + e.getMessage(), e);
+        }
+
+        if (compressionThreshold > 0 && encoded.length >= compressionThreshold) {
+            byte[] compressed = compress(encoded);
+            if (compressed != null) {
+                return compressed;
+            }
+        }
+
+        byte[] result = new byte[HEADER_LENGTH + encoded.length];
+        writeHeader(result, (byte) 0);
+        System.arraycopy(encoded, 0, result, HEADER_LENGTH, encoded.length);
+        return result;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes.length < HEADER_LENGTH || bytes[0] != MAGIC || bytes[1] != VERSION) {
+            // Written by an older release, treat as a miss
+            return null;
+        }
+
+        try {
+            if ((bytes[2] & FLAG_LZ4) == 0) {
+                return mapper.readValue(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH, Object.class);
+            }
+            byte[] encoded = decompress(bytes);
+            return mapper.readValue(encoded, Object.class);
+        } catch (IOException | LZ4Exception e) {
+            throw new SerializationException("Could not decode cache value: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the compressed value with its header and uncompressed length,
+     * or {@code null} if compression does not make it smaller.
+     */
+    private byte[] compress(byte[] encoded) {
+        int offset = HEADER_LENGTH + Integer.BYTES;
+        byte[] buffer = new byte[offset + compressor.maxCompressedLength(encoded.length)];
+        int compressedLength = compressor.compress(encoded, 0, encoded.length, buffer, offset,
+                buffer.length - offset);
+        if (offset + compressedLength >= HEADER_LENGTH + encoded.length) {
+            return null;
+        }
+
+        writeHeader(buffer, FLAG_LZ4);
+        ByteBuffer.wrap(buffer, HEADER_LENGTH, Integer.BYTES).putInt(encoded.length);
+        byte[] result = new byte[offset + compressedLength];
+        System.arraycopy(buffer, 0, result, 0, result.length);
+        return result;
+    }
+
+    private byte[] decompress(byte[] bytes) {
+        if (bytes.length < HEADER_LENGTH + Integer.BYTES) {
+            throw new SerializationException("Truncated compressed cache value");
+        }
+        int length = ByteBuffer.wrap(bytes, HEADER_LENGTH, Integer.BYTES).getInt();
+        if (length < 0 || length > MAX_UNCOMPRESSED_LENGTH) {
+            throw new SerializationException("Invalid uncompressed length " + length + " in cache value");
+        }
+        byte[] encoded = new byte[length];
+        decompressor.decompress(bytes, HEADER_LENGTH + Integer.BYTES, encoded, 0, length);
+        return encoded;
+    }
+
+    private static void writeHeader(byte[] bytes, byte flags) {
+        bytes[0] = MAGIC;
+        bytes[1] = VERSION;
+        bytes[2] = flags;
+    }
+}
@@ -0,0 +1,130 @@
+package com.ecommerce.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a slow or unreachable Redis from stalling requests. After
+ * {@code cache.redis.circuit.failure-threshold} consecutive connection
+ * failures or timeouts the circuit opens and callers get their fallback
+ * straight away, without touching Redis. While open, a background probe
+ * PINGs Redis every {@code cache.redis.circuit.probe-interval-ms}; once it
+ * answers the circuit closes and the recovery listeners run.
+ */
+@Component
+public class RedisCircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisCircuitBreaker.class);
+
+    private final RedisConnectionFactory connectionFactory;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final List<Runnable> recoveryListeners = new CopyOnWriteArrayList<>();
+    private volatile boolean open;
+
+    @Value("${cache.redis.circuit.failure-threshold:5}")
+    private int failureThreshold;
+
+    public RedisCircuitBreaker(RedisConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Runs {@code action} against Redis, or returns {@code fallback} if the
+     * circuit is open or Redis fails. Other exceptions are rethrown.
+     */
+    public <T> T execute(Supplier<T> action, Supplier<T> fallback) {
+        if (open) {
+            return fallback.get();
+        }
+        try {
+            T result = action.get();
+            if (consecutiveFailures.get() != 0) {
+                consecutiveFailures.set(0);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            if (!isRedisFailure(e)) {
+                throw e;
+            }
+            recordFailure(e);
+            return fallback.get();
+        }
+    }
+
+    public void run(Runnable action, Runnable fallback) {
+        execute(() -> {
+            action.run();
+            return null;
+        }, () -> {
+            fallback.run();
+            return null;
+        });
+    }
+
+    /**
+     * Registers an action to run each time Redis becomes reachable again,
+     * such as replaying invalidations that could not be sent.
+     */
+    public void onRecovery(Runnable listener) {
+        recoveryListeners.add(listener);
+    }
+
+    @Scheduled(fixedDelayString = "${cache.redis.circuit.probe-interval-ms:1000}")
+    public void probe() {
+        if (!open) {
+            return;
+        }
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            connection.ping();
+        } catch (Exception e) {
+            logger.debug("Redis is still unavailable: {}", e.getMessage());
+            return;
+        }
+
+        consecutiveFailures.set(0);
+        open = false;
+        logger.warn("Redis is reachable again, closing the cache circuit");
+        for (Runnable listener : recoveryListeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                logger.warn("Redis recovery action failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void recordFailure(RuntimeException e) {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (!open && failures >= failureThreshold) {
+            open = true;
+            logger.error("Redis failed {} times in a row, bypassing it until it answers again: {}",
+                    failures, e.getMessage());
+        } else {
+            logger.warn("Redis operation failed: {}", e.getMessage());
+        }
+    }
+
+    private static boolean isRedisFailure(RuntimeException e) {
+        // Connection failures and timeouts; serialization errors are not Redis' fault
+        return e instanceof DataAccessResourceFailureException
+                || e instanceof TransientDataAccessException
+                || e instanceof RedisSystemException;
+    }
+}
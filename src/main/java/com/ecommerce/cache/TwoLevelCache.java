@@ -0,0 +1,366 @@
+package com.ecommerce.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.data.redis.util.ByteUtils;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Cache backed by a bounded in-process Caffeine cache (L1) in front of a
+ * shared remote cache (L2, Redis). Reads are served from L1 when possible;
+ * every write goes to both levels and is broadcast so that other nodes drop
+ * their now stale L1 entry.
+ *
+ * <p>While the {@link RedisCircuitBreaker} is open the cache runs on L1
+ * alone: L2 lookups count as misses and writes skip Redis. The keys written
+ * meanwhile are remembered and evicted from Redis and the other nodes once
+ * it is back, or the whole cache is cleared if there were too many.
+ */
+public class TwoLevelCache implements Cache {
+
+    private static final int MAX_MISSED_INVALIDATIONS = 10000;
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> localCache;
+    private final Cache remoteCache;
+    private final TwoLevelCacheManager cacheManager;
+    private final RedisCircuitBreaker circuitBreaker;
+    private final CacheStats stats = new CacheStats();
+    private final Set<String> missedInvalidations = ConcurrentHashMap.newKeySet();
+    private volatile boolean missedClear;
+
+    public TwoLevelCache(String name,
+            com.github.benmanes.caffeine.cache.Cache<String, Object> localCache,
+            Cache remoteCache,
+            TwoLevelCacheManager cacheManager,
+            RedisCircuitBreaker circuitBreaker) {
+        this.name = name;
+        this.localCache = localCache;
+        this.remoteCache = remoteCache;
+        this.cacheManager = cacheManager;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return this;
+    }
+
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    public long getLocalSize() {
+        return localCache.estimatedSize();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = localKey(key);
+        Object value = localCache.getIfPresent(localKey);
+        if (value != null) {
+            stats.localHit();
+            return new SimpleValueWrapper(value);
+        }
+        stats.localMiss();
+
+        ValueWrapper wrapper = getRemote(key);
+        if (wrapper == null || wrapper.get() == null) {
+            stats.remoteMiss();
+            return wrapper;
+        }
+        stats.remoteHit();
+        localCache.put(localKey, wrapper.get());
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException(
+                    "Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    /**
+     * Used for {@code @Cacheable(sync = true)}. Caffeine runs the mapping
+     * function at most once per key at a time, so concurrent misses on one
+     * node wait for a single L2 lookup or load instead of each hitting the DB.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String localKey = localKey(key);
+        Object value = localCache.getIfPresent(localKey);
+        if (value != null) {
+            stats.localHit();
+            return (T) value;
+        }
+
+        return (T) localCache.get(localKey, k -> {
+            stats.localMiss();
+            ValueWrapper wrapper = getRemote(key);
+            if (wrapper != null && wrapper.get() != null) {
+                stats.remoteHit();
+                return wrapper.get();
+            }
+            stats.remoteMiss();
+
+            T loaded;
+            try {
+                loaded = valueLoader.call();
+            } catch (Exception ex) {
+                throw new ValueRetrievalException(key, valueLoader, ex);
+            }
+            if (loaded != null) {
+                putRemote(key, loaded);
+            }
+            return loaded;
+        });
+    }
+
+    /**
+     * Multi-key read: looks up {@code keys} in L1, the rest with one Redis
+     * MGET, and loads whatever is still missing with a single call to
+     * {@code loader}. Loaded values are written back to Redis in one
+     * pipeline. Keys the loader finds nothing for are left out of the result.
+     */
+    public <K, V> Map<K, V> getAll(Collection<K> keys, Class<V> type, Function<List<K>, Map<K, V>> loader) {
+        Map<K, V> found = new HashMap<>();
+        List<K> remoteKeys = new ArrayList<>();
+        for (K key : new LinkedHashSet<>(keys)) {
+            Object value = localCache.getIfPresent(localKey(key));
+            if (type.isInstance(value)) {
+                stats.localHit();
+                found.put(key, type.cast(value));
+            } else {
+                stats.localMiss();
+                remoteKeys.add(key);
+            }
+        }
+        if (remoteKeys.isEmpty()) {
+            return found;
+        }
+
+        List<Object> remoteValues = getAllRemote(remoteKeys);
+        List<K> missing = new ArrayList<>();
+        for (int i = 0; i < remoteKeys.size(); i++) {
+            K key = remoteKeys.get(i);
+            Object value = remoteValues.get(i);
+            if (type.isInstance(value)) {
+                stats.remoteHit();
+                localCache.put(localKey(key), value);
+                found.put(key, type.cast(value));
+            } else {
+                stats.remoteMiss();
+                missing.add(key);
+            }
+        }
+        if (missing.isEmpty()) {
+            return found;
+        }
+
+        Map<K, V> loaded = loader.apply(missing);
+        loaded.forEach((key, value) -> localCache.put(localKey(key), value));
+        putAllRemote(loaded);
+        found.putAll(loaded);
+        return found;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        putRemote(key, value);
+        if (value != null) {
+            localCache.put(localKey(key), value);
+        }
+        cacheManager.publishEviction(name, localKey(key));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = circuitBreaker.execute(() -> remoteCache.putIfAbsent(key, value), () -> {
+            missedInvalidation(key);
+            return null;
+        });
+        Object current = existing != null ? existing.get() : value;
+        if (current != null) {
+            localCache.put(localKey(key), current);
+        }
+        if (existing == null) {
+            cacheManager.publishEviction(name, localKey(key));
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        circuitBreaker.run(() -> remoteCache.evict(key), () -> missedInvalidation(key));
+        localCache.invalidate(localKey(key));
+        cacheManager.publishEviction(name, localKey(key));
+    }
+
+    /**
+     * Evicts several keys with a single Redis DEL and a single invalidation
+     * message, instead of one round trip and one message per key.
+     */
+    public void evictAll(Collection<?> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        List<String> localKeys = keys.stream().map(this::localKey).toList();
+        circuitBreaker.run(() -> {
+            if (remoteCache instanceof RedisCache redisCache) {
+                String prefix = keyPrefix(redisCache.getCacheConfiguration());
+                cacheManager.deleteRemote(localKeys.stream().map(key -> prefix + key).toList());
+            } else {
+                keys.forEach(remoteCache::evict);
+            }
+        }, () -> localKeys.forEach(this::missedInvalidation));
+        localCache.invalidateAll(localKeys);
+        cacheManager.publishEvictions(name, localKeys);
+    }
+
+    @Override
+    public void clear() {
+        circuitBreaker.run(remoteCache::clear, () -> missedClear = true);
+        localCache.invalidateAll();
+        cacheManager.publishClear(name);
+    }
+
+    /**
+     * Sends the invalidations that were skipped while Redis was unavailable,
+     * so neither Redis nor another node keeps serving a value written before
+     * or during the outage.
+     */
+    void replayMissedInvalidations() {
+        if (missedClear) {
+            missedClear = false;
+            missedInvalidations.clear();
+            circuitBreaker.run(remoteCache::clear, () -> missedClear = true);
+            cacheManager.publishClear(name);
+            return;
+        }
+        if (missedInvalidations.isEmpty()) {
+            return;
+        }
+        List<String> keys = List.copyOf(missedInvalidations);
+        missedInvalidations.removeAll(keys);
+        evictAll(keys);
+    }
+
+    void evictLocal(String localKey) {
+        localCache.invalidate(localKey);
+    }
+
+    void clearLocal() {
+        localCache.invalidateAll();
+    }
+
+    private ValueWrapper getRemote(Object key) {
+        return circuitBreaker.execute(() -> remoteCache.get(key), () -> null);
+    }
+
+    private void putRemote(Object key, Object value) {
+        circuitBreaker.run(() -> remoteCache.put(key, value), () -> missedInvalidation(key));
+    }
+
+    /**
+     * Values for {@code keys} in the same order, {@code null} for misses and
+     * for entries that cannot be read.
+     */
+    private List<Object> getAllRemote(List<?> keys) {
+        List<Object> values = new ArrayList<>(keys.size());
+        if (!(remoteCache instanceof RedisCache redisCache)) {
+            for (Object key : keys) {
+                ValueWrapper wrapper = getRemote(key);
+                values.add(wrapper != null ? wrapper.get() : null);
+            }
+            return values;
+        }
+
+        RedisCacheConfiguration configuration = redisCache.getCacheConfiguration();
+        String prefix = keyPrefix(configuration);
+        List<byte[]> stored = circuitBreaker.execute(
+                () -> cacheManager.getRemote(keys.stream().map(key -> prefix + localKey(key)).toList()),
+                () -> null);
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] bytes = stored != null ? stored.get(i) : null;
+            Object value = null;
+            if (bytes != null) {
+                try {
+                    value = configuration.getValueSerializationPair().read(ByteBuffer.wrap(bytes));
+                } catch (SerializationException e) {
+                    // Reloaded and overwritten like any other miss
+                }
+            }
+            values.add(value);
+        }
+        return values;
+    }
+
+    private void putAllRemote(Map<?, ?> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        if (!(remoteCache instanceof RedisCache redisCache)) {
+            values.forEach(this::putRemote);
+            return;
+        }
+
+        RedisCacheConfiguration configuration = redisCache.getCacheConfiguration();
+        String prefix = keyPrefix(configuration);
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        values.forEach((key, value) -> entries.put(prefix + localKey(key),
+                ByteUtils.getBytes(configuration.getValueSerializationPair().write(value))));
+        // Every entry of a cache has the same TTL (see RedisConfig)
+        Map.Entry<?, ?> first = values.entrySet().iterator().next();
+        Duration timeToLive = configuration.getTtlFunction().getTimeToLive(first.getKey(), first.getValue());
+        circuitBreaker.run(() -> cacheManager.putRemote(entries, timeToLive),
+                () -> values.keySet().forEach(this::missedInvalidation));
+    }
+
+    private String keyPrefix(RedisCacheConfiguration configuration) {
+        return configuration.usePrefix() ? configuration.getKeyPrefixFor(name) : "";
+    }
+
+    private void missedInvalidation(Object key) {
+        if (missedClear) {
+            return;
+        }
+        if (missedInvalidations.size() >= MAX_MISSED_INVALIDATIONS) {
+            missedClear = true;
+            missedInvalidations.clear();
+        } else {
+            missedInvalidations.add(localKey(key));
+        }
+    }
+
+    private String localKey(Object key) {
+        return String.valueOf(key);
+    }
+}
@@ -0,0 +1,222 @@
+package com.ecommerce.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Wraps the Redis cache manager so that every cache gets a per-node Caffeine
+ * L1 in front of it. L1 invalidations are broadcast to the other nodes over
+ * Redis pub/sub on {@link #INVALIDATION_TOPIC}. While the
+ * {@link RedisCircuitBreaker} is open the caches fall back to L1 only and
+ * replay their skipped invalidations once Redis is reachable again.
+ */
+public class TwoLevelCacheManager implements CacheManager, MessageListener {
+
+    public static final String INVALIDATION_TOPIC = "cache:invalidation";
+
+    private static final Logger logger = LoggerFactory.getLogger(TwoLevelCacheManager.class);
+    private static final String SEPARATOR = "|";
+    private static final String KEY_SEPARATOR = "\n";
+
+    private final CacheManager remoteCacheManager;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisCircuitBreaker circuitBreaker;
+    private final long localMaximumSize;
+    private final Duration localTimeToLive;
+    private final Map<String, Duration> cacheTimeToLives;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ConcurrentMap<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Cache> transactionAwareCaches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(CacheManager remoteCacheManager, StringRedisTemplate redisTemplate,
+            RedisCircuitBreaker circuitBreaker, long localMaximumSize, Duration localTimeToLive,
+            Map<String, Duration> cacheTimeToLives) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.redisTemplate = redisTemplate;
+        this.circuitBreaker = circuitBreaker;
+        this.localMaximumSize = localMaximumSize;
+        this.localTimeToLive = localTimeToLive;
+        this.cacheTimeToLives = cacheTimeToLives;
+        circuitBreaker.onRecovery(() -> caches.values().forEach(TwoLevelCache::replayMissedInvalidations));
+    }
+
+    /**
+     * Returns the cache wrapped so that puts and evictions issued inside a
+     * transaction are applied only after it commits; otherwise a concurrent
+     * reader could re-cache the pre-commit row right after an eviction.
+     */
+    @Override
+    public Cache getCache(String name) {
+        return transactionAwareCaches.computeIfAbsent(name, n -> {
+            TwoLevelCache cache = getTwoLevelCache(n);
+            return cache != null ? new TransactionAwareCacheDecorator(cache) : null;
+        });
+    }
+
+    public TwoLevelCache getTwoLevelCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    /**
+     * Evicts {@code keys} from both levels of a cache with one Redis command
+     * and one invalidation message. Inside a transaction this happens only
+     * once it commits, like evictions through {@link #getCache}.
+     */
+    public void evictAll(String cacheName, Collection<?> keys) {
+        TwoLevelCache cache = getTwoLevelCache(cacheName);
+        if (cache == null || keys.isEmpty()) {
+            return;
+        }
+        List<?> evicted = List.copyOf(keys);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.evictAll(evicted);
+                }
+            });
+        } else {
+            cache.evictAll(evicted);
+        }
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    public boolean isRemoteAvailable() {
+        return !circuitBreaker.isOpen();
+    }
+
+    public Map<String, Map<String, Long>> getStatistics() {
+        Map<String, Map<String, Long>> statistics = new LinkedHashMap<>();
+        caches.forEach((name, cache) -> {
+            Map<String, Long> snapshot = cache.getStats().snapshot();
+            snapshot.put("l1Size", cache.getLocalSize());
+            statistics.put(name, snapshot);
+        });
+        return statistics;
+    }
+
+    private TwoLevelCache createCache(String name) {
+        Cache remoteCache = remoteCacheManager.getCache(name);
+        if (remoteCache == null) {
+            return null;
+        }
+
+        // TTL is only a safety net in case an invalidation message is lost,
+        // but must never outlive the Redis entry of caches with a short TTL
+        Duration timeToLive = localTimeToLive;
+        Duration cacheTimeToLive = cacheTimeToLives.get(name);
+        if (cacheTimeToLive != null && cacheTimeToLive.compareTo(timeToLive) < 0) {
+            timeToLive = cacheTimeToLive;
+        }
+
+        com.github.benmanes.caffeine.cache.Cache<String, Object> localCache = Caffeine.newBuilder()
+                .maximumSize(localMaximumSize)
+                .expireAfterWrite(timeToLive)
+                .build();
+        return new TwoLevelCache(name, localCache, remoteCache, this, circuitBreaker);
+    }
+
+    void publishEviction(String cacheName, String key) {
+        publish(nodeId + SEPARATOR + cacheName + SEPARATOR + key);
+    }
+
+    void publishEvictions(String cacheName, Collection<String> keys) {
+        publish(nodeId + SEPARATOR + cacheName + SEPARATOR + String.join(KEY_SEPARATOR, keys));
+    }
+
+    void deleteRemote(Collection<String> redisKeys) {
+        redisTemplate.delete(redisKeys);
+    }
+
+    /**
+     * Raw values of {@code redisKeys} with a single MGET, {@code null} for
+     * missing keys.
+     */
+    List<byte[]> getRemote(List<String> redisKeys) {
+        byte[][] keys = redisKeys.stream()
+                .map(key -> key.getBytes(StandardCharsets.UTF_8))
+                .toArray(byte[][]::new);
+        return redisTemplate.execute(
+                (RedisCallback<List<byte[]>>) connection -> connection.stringCommands().mGet(keys));
+    }
+
+    /**
+     * Writes raw values in one pipeline, all with the same TTL.
+     */
+    void putRemote(Map<String, byte[]> values, Duration timeToLive) {
+        Expiration expiration = timeToLive != null && !timeToLive.isZero() && !timeToLive.isNegative()
+                ? Expiration.from(timeToLive)
+                : Expiration.persistent();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            values.forEach((key, value) -> connection.stringCommands().set(
+                    key.getBytes(StandardCharsets.UTF_8), value, expiration, RedisStringCommands.SetOption.upsert()));
+            return null;
+        });
+    }
+
+    void publishClear(String cacheName) {
+        publish(nodeId + SEPARATOR + cacheName);
+    }
+
+    private void publish(String message) {
+        // Skipped while the circuit is open; the caches replay their keys on recovery
+        if (circuitBreaker.isOpen()) {
+            return;
+        }
+        try {
+            circuitBreaker.run(() -> redisTemplate.convertAndSend(INVALIDATION_TOPIC, message),
+                    () -> logger.warn("Could not publish cache invalidation '{}'", message));
+        } catch (Exception e) {
+            logger.warn("Could not publish cache invalidation '{}': {}", message, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        // Format: nodeId|cacheName[|key[\nkey...]]
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 3);
+        if (parts.length < 2 || nodeId.equals(parts[0])) {
+            return;
+        }
+
+        TwoLevelCache cache = caches.get(parts[1]);
+        if (cache == null) {
+            return;
+        }
+
+        if (parts.length == 3) {
+            for (String key : parts[2].split(KEY_SEPARATOR)) {
+                cache.evictLocal(key);
+            }
+        } else {
+            cache.clearLocal();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.ecommerce.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executor;
+
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+
+    @Value("${payment.executor.core-pool-size:8}")
+    private int corePoolSize;
+
+    @Value("${payment.executor.max-pool-size:32}")
+    private int maxPoolSize;
+
+    @Value("${payment.executor.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Value("${payment.executor.virtual-concurrency-limit:1000}")
+    private int virtualConcurrencyLimit;
+
+    /**
+     * Dedicated pool for the payment gateway call, so slow payments never
+     * occupy request threads or hold a JDBC connection while they wait.
+     * With virtual threads enabled each payment gets its own virtual thread
+     * instead, capped so a burst cannot start unbounded work.
+     */
+    @Bean(name = "paymentExecutor")
+    public Executor paymentExecutor(Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("payment-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(virtualConcurrencyLimit);
+            executor.setTaskTerminationTimeout(30000);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("payment-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+}
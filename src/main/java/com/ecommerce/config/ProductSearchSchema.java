@@ -0,0 +1,89 @@
+package com.ecommerce.config;
+
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Installs the Postgres full-text index behind product search: a
+ * {@code search_vector} column kept current by triggers, and its GIN index.
+ * Hibernate does not map the column, so this runs once every singleton,
+ * the entity manager included, has been created, and before the web server
+ * starts taking requests.
+ *
+ * <p>Nodes starting together take turns through an advisory lock. It is
+ * polled rather than waited on, because {@code CREATE INDEX CONCURRENTLY}
+ * waits for every open transaction, a blocked lock request included.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductSearchSchema implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchSchema.class);
+    private static final String SCRIPT = "db/product-search.sql";
+    // Any fixed key; only this class takes it
+    private static final long LOCK_KEY = 0x5EA4C4L;
+    private static final long LOCK_WAIT_MILLIS = 600000;
+
+    // An index whose concurrent build failed stays INVALID; IF NOT EXISTS would skip it forever
+    private static final String INVALID_INDEX_SQL = "SELECT 1 FROM pg_index " +
+            "WHERE indexrelid = to_regclass('idx_product_search_vector') AND NOT indisvalid";
+
+    private final DataSource dataSource;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try (Statement statement = connection.createStatement()) {
+            lock(statement);
+            try {
+                if (exists(statement, INVALID_INDEX_SQL)) {
+                    logger.warn("Dropping the product search index left invalid by a failed build");
+                    statement.execute("DROP INDEX CONCURRENTLY idx_product_search_vector");
+                }
+                ResourceDatabasePopulator populator = new ResourceDatabasePopulator(new ClassPathResource(SCRIPT));
+                populator.setSeparator("@@");
+                populator.populate(connection);
+            } finally {
+                statement.execute("SELECT pg_advisory_unlock(" + LOCK_KEY + ")");
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not install the product search index", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+        logger.info("Product search index is in place");
+    }
+
+    private static void lock(Statement statement) throws SQLException {
+        long deadline = System.currentTimeMillis() + LOCK_WAIT_MILLIS;
+        while (!exists(statement, "SELECT 1 WHERE pg_try_advisory_lock(" + LOCK_KEY + ")")) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Timed out waiting for another node to install product search");
+            }
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting to install product search", e);
+            }
+        }
+    }
+
+    private static boolean exists(Statement statement, String sql) throws SQLException {
+        try (ResultSet rs = statement.executeQuery(sql)) {
+            return rs.next();
+        }
+    }
+}
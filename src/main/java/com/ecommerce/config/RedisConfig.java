@@ -1,22 +1,47 @@
 package com.ecommerce.config;
 
-import org.springframework.cache.CacheManager;
+import com.ecommerce.cache.CompactCacheSerializer;
+import com.ecommerce.cache.RedisCircuitBreaker;
+import com.ecommerce.cache.TwoLevelCacheManager;
+import com.ecommerce.service.CatalogueIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CachingConfigurer;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.interceptor.CacheErrorHandler;
+import org.springframework.cache.interceptor.LoggingCacheErrorHandler;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 
 @Configuration
 @EnableCaching
-public class RedisConfig {
+public class RedisConfig implements CachingConfigurer {
+
+    @Value("${cache.local.maximum-size:10000}")
+    private long localCacheMaximumSize;
+
+    @Value("${cache.local.time-to-live-seconds:300}")
+    private long localCacheTimeToLiveSeconds;
+
+    @Value("${cache.codec.format:smile}")
+    private String cacheCodecFormat;
+
+    @Value("${cache.codec.compression-threshold-bytes:1024}")
+    private int cacheCompressionThreshold;
 
     @Bean
     public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
@@ -27,8 +52,7 @@ public class RedisConfig {
         template.setKeySerializer(new StringRedisSerializer());
         template.setHashKeySerializer(new StringRedisSerializer());
 
-        // Use JSON serializer for values
-        GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer();
+        RedisSerializer<Object> serializer = cacheValueSerializer();
         template.setValueSerializer(serializer);
         template.setHashValueSerializer(serializer);
 
@@ -36,19 +60,66 @@ public class RedisConfig {
         return template;
     }
 
+    /**
+     * A cache failure that gets past the circuit breaker is logged and the
+     * method runs uncached, rather than failing the request.
+     */
+    @Override
+    public CacheErrorHandler errorHandler() {
+        return new LoggingCacheErrorHandler();
+    }
+
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
+    public TwoLevelCacheManager cacheManager(RedisConnectionFactory connectionFactory,
+            StringRedisTemplate stringRedisTemplate, RedisCircuitBreaker redisCircuitBreaker) {
         RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
                 .entryTtl(Duration.ofHours(1))
                 .serializeKeysWith(
                         RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
                 .serializeValuesWith(
-                        RedisSerializationContext.SerializationPair.fromSerializer(
-                                new GenericJackson2JsonRedisSerializer()))
+                        RedisSerializationContext.SerializationPair.fromSerializer(cacheValueSerializer()))
                 .disableCachingNullValues();
 
-        return RedisCacheManager.builder(connectionFactory)
+        // Listing pages and the unheld stock of products move with every order, so
+        // they live briefly instead of being evicted; total counts change rarely
+        Map<String, Duration> cacheTtls = Map.of(
+                "productListings", Duration.ofSeconds(60),
+                "productAvailability", Duration.ofSeconds(60),
+                "productCounts", Duration.ofMinutes(10));
+
+        Map<String, RedisCacheConfiguration> cacheConfigurations = new HashMap<>();
+        cacheTtls.forEach((name, ttl) -> cacheConfigurations.put(name, config.entryTtl(ttl)));
+
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
                 .cacheDefaults(config)
+                .withInitialCacheConfigurations(cacheConfigurations)
                 .build();
+        redisCacheManager.afterPropertiesSet();
+
+        return new TwoLevelCacheManager(redisCacheManager, stringRedisTemplate, redisCircuitBreaker,
+                localCacheMaximumSize, Duration.ofSeconds(localCacheTimeToLiveSeconds), cacheTtls);
+    }
+
+    /**
+     * Smile with LZ4 for large values by default; {@code json} keeps the
+     * readable format for debugging. Entries written in the other format are
+     * read as misses by the compact codec.
+     */
+    private RedisSerializer<Object> cacheValueSerializer() {
+        if ("json".equalsIgnoreCase(cacheCodecFormat)) {
+            return new GenericJackson2JsonRedisSerializer();
+        }
+        return new CompactCacheSerializer(cacheCompressionThreshold);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(
+            RedisConnectionFactory connectionFactory, TwoLevelCacheManager cacheManager,
+            CatalogueIndex catalogueIndex) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(cacheManager, new ChannelTopic(TwoLevelCacheManager.INVALIDATION_TOPIC));
+        container.addMessageListener(catalogueIndex, new ChannelTopic(CatalogueIndex.CHANGES_TOPIC));
+        return container;
     }
 }
@@ -0,0 +1,35 @@
+package com.ecommerce.config;
+
+import org.springframework.boot.jdbc.init.DataSourceScriptDatabaseInitializer;
+import org.springframework.boot.sql.init.DatabaseInitializationMode;
+import org.springframework.boot.sql.init.DatabaseInitializationSettings;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Adds mapped columns and tables to databases created before they existed:
+ * stock holds ({@code reserved_quantity}, {@code stock_holds}) and the
+ * idempotency key of orders. Unlike {@link ProductSearchSchema} these are
+ * mapped by Hibernate, so the scripts have to run before the entity manager
+ * starts or {@code ddl-auto: validate} fails; Spring Boot orders script
+ * initializers ahead of JPA.
+ */
+@Configuration
+public class SchemaUpgrades {
+
+    private static final List<String> SCRIPTS = List.of(
+            "classpath:db/stock-holds.sql",
+            "classpath:db/order-idempotency.sql");
+
+    @Bean
+    public DataSourceScriptDatabaseInitializer schemaUpgradesInitializer(DataSource dataSource) {
+        DatabaseInitializationSettings settings = new DatabaseInitializationSettings();
+        settings.setSchemaLocations(SCRIPTS);
+        settings.setMode(DatabaseInitializationMode.ALWAYS);
+        settings.setSeparator("@@");
+        return new DataSourceScriptDatabaseInitializer(dataSource, settings);
+    }
+}
@@ -0,0 +1,25 @@
+package com.ecommerce.controller;
+
+import com.ecommerce.cache.TwoLevelCacheManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/cache")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+public class CacheController {
+
+    private final TwoLevelCacheManager cacheManager;
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Map<String, Long>>> getCacheStats() {
+        return ResponseEntity.ok(cacheManager.getStatistics());
+    }
+}
@@ -0,0 +1,88 @@
+package com.ecommerce.controller;
+
+import com.ecommerce.dto.CartDTO;
+import com.ecommerce.dto.CartMergeRequest;
+import com.ecommerce.dto.CheckoutRequest;
+import com.ecommerce.dto.OrderDTO;
+import com.ecommerce.dto.OrderItemRequest;
+import com.ecommerce.security.UserDetailsImpl;
+import com.ecommerce.service.CartService;
+import com.ecommerce.service.IdempotencyService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.net.URI;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/cart")
+@RequiredArgsConstructor
+public class CartController {
+
+    private final CartService cartService;
+    private final IdempotencyService idempotencyService;
+
+    @GetMapping
+    public ResponseEntity<CartDTO> getCart(@AuthenticationPrincipal UserDetailsImpl userDetails) {
+        return ResponseEntity.ok(cartService.getCart(userDetails.getId()));
+    }
+
+    @PostMapping("/items")
+    public ResponseEntity<Map<String, Object>> addItem(
+            @AuthenticationPrincipal UserDetailsImpl userDetails,
+            @Valid @RequestBody OrderItemRequest item) {
+        long lines = cartService.addItem(userDetails.getId(), item.getProductId(), item.getQuantity());
+        return ResponseEntity.ok(Map.of("lines", lines));
+    }
+
+    @PutMapping("/items/{productId}")
+    public ResponseEntity<Map<String, Object>> setQuantity(
+            @AuthenticationPrincipal UserDetailsImpl userDetails,
+            @PathVariable Long productId,
+            @RequestParam int quantity) {
+        long lines = cartService.setQuantity(userDetails.getId(), productId, quantity);
+        return ResponseEntity.ok(Map.of("lines", lines));
+    }
+
+    @DeleteMapping("/items/{productId}")
+    public ResponseEntity<Map<String, Object>> removeItem(
+            @AuthenticationPrincipal UserDetailsImpl userDetails,
+            @PathVariable Long productId) {
+        long lines = cartService.removeItem(userDetails.getId(), productId);
+        return ResponseEntity.ok(Map.of("lines", lines));
+    }
+
+    @PostMapping("/merge")
+    public ResponseEntity<Map<String, Object>> merge(
+            @AuthenticationPrincipal UserDetailsImpl userDetails,
+            @Valid @RequestBody CartMergeRequest request) {
+        return ResponseEntity.ok(cartService.merge(userDetails.getId(), request.getItems()));
+    }
+
+    @DeleteMapping
+    public ResponseEntity<Void> clear(@AuthenticationPrincipal UserDetailsImpl userDetails) {
+        cartService.clear(userDetails.getId());
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/checkout")
+    public ResponseEntity<OrderDTO> checkout(
+            @AuthenticationPrincipal UserDetailsImpl userDetails,
+            @RequestHeader(value = OrderController.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @Valid @RequestBody CheckoutRequest request) {
+        Long userId = userDetails.getId();
+        OrderDTO order = idempotencyKey == null
+                ? cartService.checkout(userId, request.getPaymentMethod(), null)
+                : idempotencyService.execute("checkout:" + userId, idempotencyKey, request, OrderDTO.class,
+                        recordedKey -> cartService.checkout(userId, request.getPaymentMethod(), recordedKey));
+        URI statusUri = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/v1/orders/{id}/status")
+                .buildAndExpand(order.getId())
+                .toUri();
+        return ResponseEntity.accepted().location(statusUri).body(order);
+    }
+}
@@ -2,16 +2,21 @@ package com.ecommerce.controller;
 
 import com.ecommerce.dto.StockUpdateRequest;
 import com.ecommerce.entity.Product;
+import com.ecommerce.service.HotStockService;
 import com.ecommerce.service.InventoryService;
+import com.ecommerce.service.StockSyncService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @RestController
@@ -21,6 +26,8 @@ import java.util.stream.Collectors;
 public class InventoryController {
 
     private final InventoryService inventoryService;
+    private final HotStockService hotStockService;
+    private final StockSyncService stockSyncService;
 
     @PutMapping("/{productId}")
     public ResponseEntity<Map<String, String>> updateStock(
@@ -33,6 +40,43 @@ public class InventoryController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Sets the stock of many products at once from a JSON array or NDJSON
+     * stream of {@code {"productId": 1, "stockQuantity": 20}} entries.
+     */
+    @PutMapping(value = "/bulk", consumes = {"application/json", "application/x-ndjson"})
+    public ResponseEntity<Map<String, Object>> updateStockLevels(HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(stockSyncService.updateStockLevels(request.getInputStream()));
+    }
+
+    @GetMapping("/{productId}/availability")
+    public ResponseEntity<Map<String, Object>> getStockAvailability(@PathVariable Long productId) {
+        return ResponseEntity.ok(inventoryService.getStockAvailability(productId));
+    }
+
+    @GetMapping("/hot")
+    public ResponseEntity<Set<Long>> getHotProducts() {
+        return ResponseEntity.ok(hotStockService.getHotProductIds());
+    }
+
+    @PutMapping("/{productId}/hot")
+    public ResponseEntity<Map<String, String>> enableHotStock(@PathVariable Long productId) {
+        hotStockService.enable(productId);
+
+        Map<String, String> response = new HashMap<>();
+        response.put("message", "Product stock is now reserved in Redis");
+        return ResponseEntity.ok(response);
+    }
+
+    @DeleteMapping("/{productId}/hot")
+    public ResponseEntity<Map<String, String>> disableHotStock(@PathVariable Long productId) {
+        hotStockService.disable(productId);
+
+        Map<String, String> response = new HashMap<>();
+        response.put("message", "Product stock is now reserved in the database");
+        return ResponseEntity.ok(response);
+    }
+
     @GetMapping("/low-stock")
     public ResponseEntity<List<Map<String, Object>>> getLowStockProducts() {
         List<Product> lowStockProducts = inventoryService.getLowStockProducts();
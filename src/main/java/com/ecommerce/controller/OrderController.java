@@ -1,32 +1,65 @@
 package com.ecommerce.controller;
 
+import com.ecommerce.config.AsyncRequestTimeouts;
+import com.ecommerce.dto.CursorPage;
 import com.ecommerce.dto.OrderDTO;
 import com.ecommerce.dto.OrderRequest;
+import com.ecommerce.security.UserDetailsImpl;
+import com.ecommerce.service.IdempotencyService;
 import com.ecommerce.service.OrderService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
-import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.net.URI;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v1/orders")
 @RequiredArgsConstructor
 public class OrderController {
 
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private final OrderService orderService;
+    private final IdempotencyService idempotencyService;
+
+    @Value("${orders.export.timeout-minutes:10}")
+    private long exportTimeoutMinutes;
 
+    /**
+     * With an {@code Idempotency-Key} header, retries of the same request
+     * return the order placed by the first one instead of placing another.
+     */
     @PostMapping
-    public ResponseEntity<OrderDTO> placeOrder(@Valid @RequestBody OrderRequest orderRequest) {
-        OrderDTO order = orderService.placeOrder(orderRequest);
-        return new ResponseEntity<>(order, HttpStatus.CREATED);
+    public ResponseEntity<OrderDTO> placeOrder(
+            @AuthenticationPrincipal UserDetailsImpl userDetails,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @Valid @RequestBody OrderRequest orderRequest) {
+        OrderDTO order = idempotencyKey == null
+                ? orderService.placeOrder(orderRequest, null)
+                : idempotencyService.execute("order:" + userDetails.getId(), idempotencyKey, orderRequest,
+                        OrderDTO.class, recordedKey -> orderService.placeOrder(orderRequest, recordedKey));
+        URI statusUri = ServletUriComponentsBuilder.fromCurrentRequest()
+                .path("/{id}/status")
+                .buildAndExpand(order.getId())
+                .toUri();
+        return ResponseEntity.accepted().location(statusUri).body(order);
     }
 
     @GetMapping("/my-orders")
@@ -35,12 +68,41 @@ public class OrderController {
         return ResponseEntity.ok(orders);
     }
 
+    @GetMapping("/my-orders/paged")
+    public ResponseEntity<Page<OrderDTO>> getMyOrdersPaged(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        Pageable pageable = PageRequest.of(page, size,
+                Sort.by("createdAt").descending().and(Sort.by("id").descending()));
+        Page<OrderDTO> orders = orderService.getUserOrderHistory(pageable);
+        return ResponseEntity.ok(orders);
+    }
+
+    @GetMapping(value = "/my-orders/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportMyOrders(
+            @AuthenticationPrincipal UserDetailsImpl userDetails, HttpServletRequest request) {
+        // The body is written on an async thread, so resolve the user up front
+        Long userId = userDetails.getId();
+        AsyncRequestTimeouts.extend(request, Duration.ofMinutes(exportTimeoutMinutes));
+        StreamingResponseBody body = out -> orderService.exportUserOrderHistory(userId, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"orders.ndjson\"")
+                .body(body);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<OrderDTO> getOrderById(@PathVariable Long id) {
         OrderDTO order = orderService.getOrderById(id);
         return ResponseEntity.ok(order);
     }
 
+    @GetMapping("/{id}/status")
+    public ResponseEntity<Map<String, Object>> getOrderStatus(@PathVariable Long id) {
+        Map<String, Object> status = orderService.getOrderStatus(id);
+        return ResponseEntity.ok(status);
+    }
+
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<Page<OrderDTO>> getAllOrders(
@@ -56,4 +118,14 @@ public class OrderController {
         Page<OrderDTO> orders = orderService.getAllOrders(pageable);
         return ResponseEntity.ok(orders);
     }
+
+    @GetMapping("/scroll")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<CursorPage<OrderDTO>> scrollAllOrders(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "DESC") String sortDir) {
+        CursorPage<OrderDTO> orders = orderService.getAllOrdersByCursor(sortDir, cursor, size);
+        return ResponseEntity.ok(orders);
+    }
 }
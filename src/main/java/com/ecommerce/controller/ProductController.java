@@ -1,26 +1,45 @@
 package com.ecommerce.controller;
 
+import com.ecommerce.config.AsyncRequestTimeouts;
+import com.ecommerce.dto.CursorPage;
 import com.ecommerce.dto.ProductDTO;
+import com.ecommerce.dto.ProductFacets;
+import com.ecommerce.service.ProductImportService;
 import com.ecommerce.service.ProductService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/v1/products")
 @RequiredArgsConstructor
 public class ProductController {
 
+    private static final int MAX_IDS_PER_REQUEST = 100;
+
     private final ProductService productService;
+    private final ProductImportService productImportService;
+
+    @Value("${catalogue.import.timeout-minutes:30}")
+    private long importTimeoutMinutes;
 
     @GetMapping
     public ResponseEntity<Page<ProductDTO>> getAllProducts(
@@ -46,6 +65,54 @@ public class ProductController {
         return ResponseEntity.ok(products);
     }
 
+    /**
+     * Several products by id in one request, in the order given, for cart and
+     * wishlist pages. Unknown ids are left out.
+     */
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<ProductDTO>> getProductsByIds(@RequestParam List<Long> ids) {
+        if (ids.size() > MAX_IDS_PER_REQUEST) {
+            throw new IllegalArgumentException("At most " + MAX_IDS_PER_REQUEST + " ids can be requested at once");
+        }
+        return ResponseEntity.ok(productService.getProductsByIds(ids));
+    }
+
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPage<ProductDTO>> scrollProducts(
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "ASC") String sortDir) {
+        CursorPage<ProductDTO> products = productService.getProductsByCursor(
+                categoryId, minPrice, maxPrice, sortBy, sortDir, cursor, size);
+        return ResponseEntity.ok(products);
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<Page<ProductDTO>> searchProducts(
+            @RequestParam("q") String query,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size) {
+        Page<ProductDTO> products = productService.searchProducts(query, categoryId, minPrice, maxPrice,
+                PageRequest.of(page, size));
+        return ResponseEntity.ok(products);
+    }
+
+    @GetMapping("/facets")
+    public ResponseEntity<ProductFacets> getProductFacets(
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice) {
+        ProductFacets facets = productService.getProductFacets(categoryId, minPrice, maxPrice);
+        return ResponseEntity.ok(facets);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<ProductDTO> getProductById(@PathVariable Long id) {
         ProductDTO product = productService.getProductById(id);
@@ -59,6 +126,28 @@ public class ProductController {
         return new ResponseEntity<>(createdProduct, HttpStatus.CREATED);
     }
 
+    /**
+     * Bulk import of a CSV file with a header row, or of NDJSON. The body is
+     * read while the import runs, and progress is streamed back as NDJSON.
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"},
+            produces = "application/x-ndjson")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> importProducts(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            HttpServletRequest request) throws IOException {
+        ProductImportService.Format format = MediaType.parseMediaType(contentType)
+                .isCompatibleWith(MediaType.parseMediaType("text/csv"))
+                ? ProductImportService.Format.CSV
+                : ProductImportService.Format.NDJSON;
+        InputStream in = request.getInputStream();
+        AsyncRequestTimeouts.extend(request, Duration.ofMinutes(importTimeoutMinutes));
+        StreamingResponseBody body = out -> productImportService.importProducts(in, format, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<ProductDTO> updateProduct(
@@ -0,0 +1,19 @@
+package com.ecommerce.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartMergeRequest {
+
+    @NotEmpty(message = "At least one item is required")
+    @Valid
+    private List<OrderItemRequest> items;
+}
@@ -0,0 +1,15 @@
+package com.ecommerce.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CheckoutRequest {
+
+    @NotNull(message = "Payment method is required")
+    private String paymentMethod;
+}
@@ -4,6 +4,7 @@ import jakarta.validation.constraints.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.With;
 
 import java.io.Serializable;
 import java.math.BigDecimal;
@@ -34,6 +35,10 @@ public class ProductDTO implements Serializable {
     @Min(value = 0, message = "Stock quantity cannot be negative")
     private Integer stockQuantity;
 
+    // Stock not held for pending orders, i.e. what can still be ordered; ignored on input
+    @With
+    private Integer availableQuantity;
+
     @NotNull(message = "Category ID is required")
     private Long categoryId;
 
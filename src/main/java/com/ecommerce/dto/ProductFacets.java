@@ -0,0 +1,38 @@
+package com.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts of available products per category and per price bucket. Each
+ * facet applies the other facet's filter but not its own, so a client can
+ * show how many products every alternative choice would return.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductFacets {
+
+    // Category id to product count, categories without matches left out
+    private Map<Long, Long> categories;
+    private List<PriceBucket> priceBuckets;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PriceBucket {
+
+        // Inclusive; null for the lowest bucket
+        private BigDecimal minPrice;
+
+        // Exclusive; null for the highest bucket
+        private BigDecimal maxPrice;
+
+        private long count;
+    }
+}
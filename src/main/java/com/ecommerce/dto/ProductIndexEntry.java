@@ -0,0 +1,23 @@
+package com.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * The columns of an available product that the catalogue index filters
+ * and sorts on, read with a JPQL constructor expression.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductIndexEntry {
+
+    private Long id;
+    private Long categoryId;
+    private BigDecimal price;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,17 @@
+package com.ecommerce.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One entry of a bulk stock update: the absolute stock level of a product.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockLevel {
+
+    private Long productId;
+    private Integer stockQuantity;
+}
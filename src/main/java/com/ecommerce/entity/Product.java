@@ -17,7 +17,8 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "products", indexes = {
         @Index(name = "idx_product_name", columnList = "name"),
-        @Index(name = "idx_product_category", columnList = "category_id")
+        @Index(name = "idx_product_category", columnList = "category_id"),
+        @Index(name = "idx_product_price_id", columnList = "price, id")
 })
 @Data
 @NoArgsConstructor
@@ -43,6 +44,11 @@ public class Product implements Serializable {
     @Column(name = "stock_quantity", nullable = false)
     private Integer stockQuantity;
 
+    // Units held for pending orders; only ever changed by guarded SQL updates
+    @Column(name = "reserved_quantity", nullable = false, insertable = false, updatable = false,
+            columnDefinition = "integer default 0")
+    private Integer reservedQuantity = 0;
+
     @ToString.Exclude
     @EqualsAndHashCode.Exclude
     @ManyToOne(fetch = FetchType.LAZY)
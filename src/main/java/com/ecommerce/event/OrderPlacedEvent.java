@@ -0,0 +1,19 @@
+package com.ecommerce.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Published once a PENDING order has been saved. Listeners run after the
+ * placing transaction commits.
+ */
+@Data
+@AllArgsConstructor
+public class OrderPlacedEvent {
+
+    private Long orderId;
+    private BigDecimal amount;
+    private String paymentMethod;
+}
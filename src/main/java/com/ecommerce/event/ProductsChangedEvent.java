@@ -0,0 +1,18 @@
+package com.ecommerce.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Collection;
+
+/**
+ * Published whenever products may have changed in a way the storefront
+ * listing can see: price, category, availability, creation or deletion.
+ * Listeners run after the publishing transaction commits.
+ */
+@Data
+@AllArgsConstructor
+public class ProductsChangedEvent {
+
+    private Collection<Long> productIds;
+}
@@ -0,0 +1,61 @@
+package com.ecommerce.metrics;
+
+import com.ecommerce.cache.CacheStats;
+import com.ecommerce.cache.TwoLevelCache;
+import com.ecommerce.cache.TwoLevelCacheManager;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Publishes the hit/miss counters of the two-level caches as
+ * {@code cache.requests{cache, level, result}} and the L1 size as
+ * {@code cache.local.size}, and whether Redis is being bypassed as
+ * {@code cache.redis.circuit.open}.
+ */
+@Component
+@RequiredArgsConstructor
+public class CacheMetricsBinder implements MeterBinder {
+
+    private static final List<String> CACHE_NAMES =
+            List.of("products", "productAvailability", "productListings", "productCounts", "categories");
+
+    private final TwoLevelCacheManager cacheManager;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (String name : CACHE_NAMES) {
+            TwoLevelCache cache = cacheManager.getTwoLevelCache(name);
+            if (cache == null) {
+                continue;
+            }
+            CacheStats stats = cache.getStats();
+            bindCounter(registry, name, "l1", "hit", stats, CacheStats::getLocalHits);
+            bindCounter(registry, name, "l1", "miss", stats, CacheStats::getLocalMisses);
+            bindCounter(registry, name, "l2", "hit", stats, CacheStats::getRemoteHits);
+            bindCounter(registry, name, "l2", "miss", stats, CacheStats::getRemoteMisses);
+
+            Gauge.builder("cache.local.size", cache, TwoLevelCache::getLocalSize)
+                    .tag("cache", name)
+                    .register(registry);
+        }
+
+        Gauge.builder("cache.redis.circuit.open", cacheManager, manager -> manager.isRemoteAvailable() ? 0 : 1)
+                .register(registry);
+    }
+
+    private void bindCounter(MeterRegistry registry, String cacheName, String level, String result,
+            CacheStats stats, ToDoubleFunction<CacheStats> count) {
+        FunctionCounter.builder("cache.requests", stats, count)
+                .tag("cache", cacheName)
+                .tag("level", level)
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -0,0 +1,67 @@
+package com.ecommerce.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Meters for the order pipeline: per-stage timers with percentile
+ * histograms, payment outcomes and stock shortfalls.
+ */
+@Component
+public class OrderMetrics {
+
+    public static final String STAGE_USER_LOOKUP = "user_lookup";
+    public static final String STAGE_PRODUCT_LOAD = "product_load";
+    public static final String STAGE_STOCK_VALIDATION = "stock_validation";
+    public static final String STAGE_SAVE = "save";
+    public static final String STAGE_PAYMENT = "payment";
+    public static final String STAGE_STOCK_DEDUCTION = "stock_deduction";
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+    private final Counter paymentSuccess;
+    private final Counter paymentFailure;
+
+    public OrderMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.paymentSuccess = paymentCounter("success");
+        this.paymentFailure = paymentCounter("failure");
+    }
+
+    public <T> T timeStage(String stage, Supplier<T> action) {
+        return stageTimer(stage).record(action);
+    }
+
+    public void recordPayment(boolean success) {
+        (success ? paymentSuccess : paymentFailure).increment();
+    }
+
+    /**
+     * @param phase "validation" when an order is rejected up front, or
+     *              "deduction" when stock ran out while payment was running
+     */
+    public void recordInsufficientStock(String phase) {
+        registry.counter("inventory.insufficient.stock", "phase", phase).increment();
+    }
+
+    private Timer stageTimer(String stage) {
+        return stageTimers.computeIfAbsent(stage, s -> Timer.builder("orders.stage")
+                .description("Time spent in each stage of placing and completing an order")
+                .tag("stage", s)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    private Counter paymentCounter(String outcome) {
+        return Counter.builder("payments.authorizations")
+                .description("Payment gateway authorizations by outcome")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
@@ -1,14 +1,24 @@
 package com.ecommerce.repository;
 
 import com.ecommerce.entity.Order;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
@@ -17,8 +27,92 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
 
     List<Order> findByUserIdOrderByCreatedAtDesc(Long userId);
 
-    @Query("SELECT o FROM Order o WHERE o.user.id = :userId ORDER BY o.createdAt DESC")
+    /**
+     * Loads the full history with user, items, products and payment in one
+     * statement, so mapping to DTOs triggers no further queries.
+     */
+    @Query("SELECT DISTINCT o FROM Order o JOIN FETCH o.user " +
+            "LEFT JOIN FETCH o.orderItems i LEFT JOIN FETCH i.product " +
+            "LEFT JOIN FETCH o.payment " +
+            "WHERE o.user.id = :userId ORDER BY o.createdAt DESC")
     List<Order> findUserOrderHistory(@Param("userId") Long userId);
 
+    /**
+     * Same rows as {@link #findUserOrderHistory} but read through a database
+     * cursor, for exports that must not hold the whole history in memory.
+     * Must be consumed inside a transaction and closed afterwards.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT o FROM Order o JOIN FETCH o.user " +
+            "LEFT JOIN FETCH o.orderItems i LEFT JOIN FETCH i.product " +
+            "LEFT JOIN FETCH o.payment " +
+            "WHERE o.user.id = :userId ORDER BY o.createdAt DESC, o.id DESC")
+    Stream<Order> streamUserOrderHistory(@Param("userId") Long userId);
+
+    @Query(value = "SELECT o.id FROM Order o WHERE o.user.id = :userId",
+            countQuery = "SELECT COUNT(o) FROM Order o WHERE o.user.id = :userId")
+    Page<Long> findIdsByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"user", "orderItems", "orderItems.product", "payment"})
+    Optional<Order> findWithDetailsById(Long id);
+
+    @EntityGraph(attributePaths = {"user", "orderItems", "orderItems.product", "payment"})
+    Optional<Order> findWithDetailsByIdempotencyKey(String idempotencyKey);
+
+    /**
+     * Second step of paged reads: fetch joins cannot be combined with
+     * LIMIT/OFFSET on a collection, so pages select ids first and then load
+     * the details for those ids here. The result is in no particular order.
+     */
+    @EntityGraph(attributePaths = {"user", "orderItems", "orderItems.product", "payment"})
+    List<Order> findWithDetailsByIdIn(Collection<Long> ids);
+
+    @Query(value = "SELECT o.id FROM Order o", countQuery = "SELECT COUNT(o) FROM Order o")
+    Page<Long> findPageIds(Pageable pageable);
+
+    /**
+     * The order locked for update, so that completing its payment and the
+     * pending order sweep cannot both change it.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id = :id")
+    Optional<Order> lockById(@Param("id") Long id);
+
+    /**
+     * The orders among {@code ids} that are still PENDING, locked for update.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id IN :ids AND o.status = com.ecommerce.entity.Order.OrderStatus.PENDING")
+    List<Order> lockPendingByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Oldest PENDING orders placed before {@code cutoff}; pass
+     * PageRequest.of(0, limit) to cap the rows.
+     */
+    @Query("SELECT o.id FROM Order o WHERE o.status = com.ecommerce.entity.Order.OrderStatus.PENDING " +
+            "AND o.createdAt < :cutoff ORDER BY o.createdAt ASC, o.id ASC")
+    List<Long> findPendingIdsCreatedBefore(@Param("cutoff") LocalDateTime cutoff, Pageable limit);
+
     Page<Order> findByStatus(Order.OrderStatus status, Pageable pageable);
+
+    // Keyset pages for the admin orders view; pass PageRequest.of(0, limit) to cap the rows
+
+    @Query("SELECT o.id FROM Order o ORDER BY o.createdAt DESC, o.id DESC")
+    List<Long> findFirstIdsByCreatedAtDesc(Pageable limit);
+
+    @Query("SELECT o.id FROM Order o WHERE o.createdAt < :createdAt " +
+            "OR (o.createdAt = :createdAt AND o.id < :id) ORDER BY o.createdAt DESC, o.id DESC")
+    List<Long> findNextIdsByCreatedAtDesc(@Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id, Pageable limit);
+
+    @Query("SELECT o.id FROM Order o ORDER BY o.createdAt ASC, o.id ASC")
+    List<Long> findFirstIdsByCreatedAtAsc(Pageable limit);
+
+    @Query("SELECT o.id FROM Order o WHERE o.createdAt > :createdAt " +
+            "OR (o.createdAt = :createdAt AND o.id > :id) ORDER BY o.createdAt ASC, o.id ASC")
+    List<Long> findNextIdsByCreatedAtAsc(@Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id, Pageable limit);
 }
@@ -1,25 +1,37 @@
 package com.ecommerce.repository;
 
+import com.ecommerce.dto.ProductIndexEntry;
 import com.ecommerce.entity.Product;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
 
+        @EntityGraph(attributePaths = "category")
         Page<Product> findByAvailableTrue(Pageable pageable);
 
+        @EntityGraph(attributePaths = "category")
         Page<Product> findByCategoryId(Long categoryId, Pageable pageable);
 
+        @EntityGraph(attributePaths = "category")
         Page<Product> findByCategoryIdAndAvailableTrue(Long categoryId, Pageable pageable);
 
+        @EntityGraph(attributePaths = "category")
         @Query("SELECT p FROM Product p WHERE p.available = true " +
                         "AND (:categoryId IS NULL OR p.category.id = :categoryId) " +
                         "AND (:minPrice IS NULL OR p.price >= :minPrice) " +
@@ -30,6 +42,116 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
                         @Param("maxPrice") BigDecimal maxPrice,
                         Pageable pageable);
 
+        /**
+         * Same predicates as {@link #findByFilters} but returns a plain list, so
+         * Spring Data applies offset/limit without issuing a count query. The
+         * category is fetched in the same statement since every DTO needs it.
+         */
+        @EntityGraph(attributePaths = "category")
+        @Query("SELECT p FROM Product p WHERE p.available = true " +
+                        "AND (:categoryId IS NULL OR p.category.id = :categoryId) " +
+                        "AND (:minPrice IS NULL OR p.price >= :minPrice) " +
+                        "AND (:maxPrice IS NULL OR p.price <= :maxPrice)")
+        List<Product> findListingByFilters(
+                        @Param("categoryId") Long categoryId,
+                        @Param("minPrice") BigDecimal minPrice,
+                        @Param("maxPrice") BigDecimal maxPrice,
+                        Pageable pageable);
+
+        @Query("SELECT COUNT(p) FROM Product p WHERE p.available = true " +
+                        "AND (:categoryId IS NULL OR p.category.id = :categoryId) " +
+                        "AND (:minPrice IS NULL OR p.price >= :minPrice) " +
+                        "AND (:maxPrice IS NULL OR p.price <= :maxPrice)")
+        long countByFilters(
+                        @Param("categoryId") Long categoryId,
+                        @Param("minPrice") BigDecimal minPrice,
+                        @Param("maxPrice") BigDecimal maxPrice);
+
+        @EntityGraph(attributePaths = "category")
+        List<Product> findWithCategoryByIdIn(Collection<Long> ids);
+
+        /**
+         * Pairs of product id and the stock not held for pending orders.
+         */
+        @Query("SELECT p.id, p.stockQuantity - p.reservedQuantity FROM Product p WHERE p.id IN :ids")
+        List<Object[]> findAvailableQuantitiesByIdIn(@Param("ids") Collection<Long> ids);
+
+        /**
+         * Ids of available products matching a tsquery over the
+         * {@code search_vector} column (see db/product-search.sql), best
+         * matches first, with the same optional filters as {@link #findByFilters}.
+         */
+        @Query(value = "SELECT p.id FROM products p, to_tsquery('english', :query) q " +
+                        "WHERE p.search_vector @@ q AND p.available = true " +
+                        "AND (CAST(:categoryId AS bigint) IS NULL OR p.category_id = :categoryId) " +
+                        "AND (CAST(:minPrice AS numeric) IS NULL OR p.price >= :minPrice) " +
+                        "AND (CAST(:maxPrice AS numeric) IS NULL OR p.price <= :maxPrice) " +
+                        "ORDER BY ts_rank_cd(p.search_vector, q) DESC, p.id " +
+                        "LIMIT :limit OFFSET :offset", nativeQuery = true)
+        List<Long> searchIds(
+                        @Param("query") String query,
+                        @Param("categoryId") Long categoryId,
+                        @Param("minPrice") BigDecimal minPrice,
+                        @Param("maxPrice") BigDecimal maxPrice,
+                        @Param("limit") int limit,
+                        @Param("offset") long offset);
+
+        @Query(value = "SELECT COUNT(*) FROM products p " +
+                        "WHERE p.search_vector @@ to_tsquery('english', :query) AND p.available = true " +
+                        "AND (CAST(:categoryId AS bigint) IS NULL OR p.category_id = :categoryId) " +
+                        "AND (CAST(:minPrice AS numeric) IS NULL OR p.price >= :minPrice) " +
+                        "AND (CAST(:maxPrice AS numeric) IS NULL OR p.price <= :maxPrice)", nativeQuery = true)
+        long countSearch(
+                        @Param("query") String query,
+                        @Param("categoryId") Long categoryId,
+                        @Param("minPrice") BigDecimal minPrice,
+                        @Param("maxPrice") BigDecimal maxPrice);
+
+        /**
+         * Index columns of every available product, for rebuilding the
+         * catalogue index. Must be consumed inside a transaction and closed
+         * afterwards.
+         */
+        @QueryHints({
+                        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+                        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+        })
+        @Query("SELECT new com.ecommerce.dto.ProductIndexEntry(p.id, p.category.id, p.price, p.createdAt) " +
+                        "FROM Product p WHERE p.available = true")
+        Stream<ProductIndexEntry> streamIndexEntries();
+
+        /**
+         * Index columns of those of {@code ids} that are available; missing
+         * ids were deleted or are no longer available.
+         */
+        @Query("SELECT new com.ecommerce.dto.ProductIndexEntry(p.id, p.category.id, p.price, p.createdAt) " +
+                        "FROM Product p WHERE p.available = true AND p.id IN :ids")
+        List<ProductIndexEntry> findIndexEntriesByIdIn(@Param("ids") Collection<Long> ids);
+
+        @Query("SELECT p.stockQuantity FROM Product p WHERE p.id = :id")
+        Integer findStockQuantityById(@Param("id") Long id);
+
+        @Query("SELECT p.id FROM Product p WHERE p.category.id = :categoryId")
+        List<Long> findIdsByCategoryId(@Param("categoryId") Long categoryId);
+
         @Query("SELECT p FROM Product p JOIN FETCH p.category WHERE p.stockQuantity < :threshold")
         List<Product> findByStockQuantityLessThan(@Param("threshold") Integer threshold);
+
+        /**
+         * Guarded decrement in a single statement. Returns 0 when the product
+         * does not exist or has fewer than {@code quantity} units left that are
+         * not held for other orders.
+         */
+        @Modifying
+        @Query("UPDATE Product p SET p.stockQuantity = p.stockQuantity - :quantity, " +
+                        "p.available = CASE WHEN p.stockQuantity - :quantity > 0 THEN true ELSE false END, " +
+                        "p.version = p.version + 1, p.updatedAt = LOCAL DATETIME " +
+                        "WHERE p.id = :id AND p.stockQuantity - p.reservedQuantity >= :quantity")
+        int decrementStock(@Param("id") Long id, @Param("quantity") Integer quantity);
+
+        @Modifying
+        @Query("UPDATE Product p SET p.stockQuantity = p.stockQuantity + :quantity, p.available = true, " +
+                        "p.version = p.version + 1, p.updatedAt = LOCAL DATETIME " +
+                        "WHERE p.id = :id")
+        int incrementStock(@Param("id") Long id, @Param("quantity") Integer quantity);
 }
@@ -0,0 +1,89 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.entity.Product;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface ProductRepositoryCustom {
+
+    /**
+     * Applies guarded stock decrements for several products in one JDBC batch.
+     *
+     * @param quantities units to deduct, keyed by product id
+     * Units held for other orders are not available.
+     *
+     * @return ids of the products that were missing or did not have enough stock
+     */
+    Set<Long> batchDecrementStock(Map<Long, Integer> quantities);
+
+    /**
+     * Deducts units that have already been sold elsewhere, without the stock
+     * guard: stock goes down to zero at most, and units held for other
+     * orders are not protected.
+     */
+    void batchDecrementStockClamped(Map<Long, Integer> quantities);
+
+    void batchIncrementStock(Map<Long, Integer> quantities);
+
+    /**
+     * Adds to {@code reserved_quantity} where enough unheld stock is left.
+     *
+     * @return ids of the products that were missing or did not have enough unheld stock
+     */
+    Set<Long> batchHoldStock(Map<Long, Integer> quantities);
+
+    /**
+     * Turns held units into a stock deduction.
+     *
+     * @return ids of the products whose held units were not there any more
+     */
+    Set<Long> batchCommitHeldStock(Map<Long, Integer> quantities);
+
+    void batchReleaseHeldStock(Map<Long, Integer> quantities);
+
+    /**
+     * Sets absolute stock levels and recomputes {@code available} in one
+     * statement, touching only rows whose values actually change. Rows are
+     * locked in id order, like the other batch updates.
+     *
+     * @param levels new stock quantity, keyed by product id
+     */
+    StockLevelUpdate batchSetStock(Map<Long, Integer> levels);
+
+    /**
+     * Takes {@code count} values from the sequence behind {@code products.id}
+     * in one round trip, so new rows can be batch inserted with their ids.
+     */
+    List<Long> allocateProductIds(int count);
+
+    /**
+     * Inserts new products in one JDBC batch. Every product must already have
+     * an id from {@link #allocateProductIds} and a category.
+     */
+    void batchInsertProducts(List<Product> products);
+
+    /**
+     * Keyset page of available products matching the same filters as
+     * {@link ProductRepository#findByFilters}, ordered by {@code sortBy} and
+     * then id. Only the predicates whose parameters are set are added, and no
+     * count query is run.
+     *
+     * @param lastValue sort key value of the previous page's last row, or null for the first page
+     * @param lastId    id of the previous page's last row, or null for the first page
+     */
+    List<Product> findNextByFilters(Long categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+            String sortBy, boolean ascending, Comparable<?> lastValue, Long lastId, int limit);
+
+    /**
+     * Outcome of {@link #batchSetStock}; ids in neither {@code updated} nor
+     * {@code unknown} already had the requested level. {@code belowReserved}
+     * lists the updated products whose new stock is less than the units
+     * held for pending orders; those orders will be cancelled and refunded
+     * when their payment completes unless stock is raised again first.
+     */
+    record StockLevelUpdate(List<Long> updated, List<Long> unknown, List<Long> belowReserved) {
+    }
+}
@@ -0,0 +1,283 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.entity.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+@RequiredArgsConstructor
+public class ProductRepositoryImpl implements ProductRepositoryCustom {
+
+    private static final String DECREMENT_SQL = "UPDATE products SET stock_quantity = stock_quantity - ?, " +
+            "available = (stock_quantity - ? > 0), version = version + 1, updated_at = LOCALTIMESTAMP " +
+            "WHERE id = ? AND stock_quantity - reserved_quantity >= ?";
+
+    private static final String CLAMPED_DECREMENT_SQL = "UPDATE products " +
+            "SET stock_quantity = GREATEST(stock_quantity - ?, 0), available = (stock_quantity - ? > 0), " +
+            "version = version + 1, updated_at = LOCALTIMESTAMP WHERE id = ?";
+
+    private static final String HOLD_SQL = "UPDATE products SET reserved_quantity = reserved_quantity + ? " +
+            "WHERE id = ? AND stock_quantity - reserved_quantity >= ?";
+
+    private static final String COMMIT_HOLD_SQL = "UPDATE products SET stock_quantity = stock_quantity - ?, " +
+            "reserved_quantity = reserved_quantity - ?, available = (stock_quantity - ? > 0), " +
+            "version = version + 1, updated_at = LOCALTIMESTAMP " +
+            "WHERE id = ? AND reserved_quantity >= ? AND stock_quantity >= ?";
+
+    private static final String RELEASE_HOLD_SQL = "UPDATE products " +
+            "SET reserved_quantity = GREATEST(reserved_quantity - ?, 0) WHERE id = ?";
+
+    private static final String INCREMENT_SQL = "UPDATE products SET stock_quantity = stock_quantity + ?, " +
+            "available = true, version = version + 1, updated_at = LOCALTIMESTAMP " +
+            "WHERE id = ?";
+
+    private static final String SET_STOCK_SQL = "WITH input AS (" +
+            "SELECT * FROM unnest(?::bigint[], ?::integer[]) AS t(id, quantity)), " +
+            "locked AS (SELECT p.id FROM products p JOIN input ON input.id = p.id " +
+            "WHERE p.stock_quantity <> input.quantity OR p.available <> (input.quantity > 0) " +
+            "ORDER BY p.id FOR UPDATE OF p), " +
+            "changed AS (UPDATE products p SET stock_quantity = input.quantity, " +
+            "available = (input.quantity > 0), version = p.version + 1, updated_at = LOCALTIMESTAMP " +
+            "FROM input JOIN locked ON locked.id = input.id WHERE p.id = input.id " +
+            "RETURNING p.id, p.reserved_quantity > input.quantity AS below_reserved) " +
+            "SELECT input.id, changed.id IS NOT NULL AS updated, " +
+            "coalesce(changed.below_reserved, false) AS below_reserved FROM input " +
+            "LEFT JOIN changed ON changed.id = input.id " +
+            "LEFT JOIN products p ON p.id = input.id " +
+            "WHERE changed.id IS NOT NULL OR p.id IS NULL";
+
+    private static final String ALLOCATE_IDS_SQL =
+            "SELECT nextval(pg_get_serial_sequence('products', 'id')) FROM generate_series(1, ?)";
+
+    private static final String INSERT_SQL = "INSERT INTO products (id, name, description, price, " +
+            "stock_quantity, reserved_quantity, category_id, image_url, created_at, updated_at, version, available) " +
+            "VALUES (?, ?, ?, ?, ?, 0, ?, ?, ?, ?, 0, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Set<Long> batchDecrementStock(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return Set.of();
+        }
+
+        // Update rows in id order so concurrent multi-item orders cannot deadlock
+        List<Map.Entry<Long, Integer>> rows = new ArrayList<>(new TreeMap<>(quantities).entrySet());
+
+        int[] counts = jdbcTemplate.batchUpdate(DECREMENT_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setInt(1, row.getValue());
+            ps.setInt(2, row.getValue());
+            ps.setLong(3, row.getKey());
+            ps.setInt(4, row.getValue());
+        })[0];
+        return failedRows(rows, counts);
+    }
+
+    @Override
+    public void batchDecrementStockClamped(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<Long, Integer>> rows = new ArrayList<>(new TreeMap<>(quantities).entrySet());
+
+        jdbcTemplate.batchUpdate(CLAMPED_DECREMENT_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setInt(1, row.getValue());
+            ps.setInt(2, row.getValue());
+            ps.setLong(3, row.getKey());
+        });
+    }
+
+    @Override
+    public void batchIncrementStock(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<Long, Integer>> rows = new ArrayList<>(new TreeMap<>(quantities).entrySet());
+
+        jdbcTemplate.batchUpdate(INCREMENT_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setInt(1, row.getValue());
+            ps.setLong(2, row.getKey());
+        });
+    }
+
+    @Override
+    public Set<Long> batchHoldStock(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return Set.of();
+        }
+
+        List<Map.Entry<Long, Integer>> rows = new ArrayList<>(new TreeMap<>(quantities).entrySet());
+
+        int[] counts = jdbcTemplate.batchUpdate(HOLD_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setInt(1, row.getValue());
+            ps.setLong(2, row.getKey());
+            ps.setInt(3, row.getValue());
+        })[0];
+        return failedRows(rows, counts);
+    }
+
+    @Override
+    public Set<Long> batchCommitHeldStock(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return Set.of();
+        }
+
+        List<Map.Entry<Long, Integer>> rows = new ArrayList<>(new TreeMap<>(quantities).entrySet());
+
+        int[] counts = jdbcTemplate.batchUpdate(COMMIT_HOLD_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setInt(1, row.getValue());
+            ps.setInt(2, row.getValue());
+            ps.setInt(3, row.getValue());
+            ps.setLong(4, row.getKey());
+            ps.setInt(5, row.getValue());
+            ps.setInt(6, row.getValue());
+        })[0];
+        return failedRows(rows, counts);
+    }
+
+    @Override
+    public void batchReleaseHeldStock(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<Long, Integer>> rows = new ArrayList<>(new TreeMap<>(quantities).entrySet());
+
+        jdbcTemplate.batchUpdate(RELEASE_HOLD_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setInt(1, row.getValue());
+            ps.setLong(2, row.getKey());
+        });
+    }
+
+    @Override
+    public StockLevelUpdate batchSetStock(Map<Long, Integer> levels) {
+        if (levels.isEmpty()) {
+            return new StockLevelUpdate(List.of(), List.of(), List.of());
+        }
+
+        Long[] ids = levels.keySet().toArray(new Long[0]);
+        Integer[] quantities = Arrays.stream(ids).map(levels::get).toArray(Integer[]::new);
+        List<Long> updated = new ArrayList<>();
+        List<Long> unknown = new ArrayList<>();
+        List<Long> belowReserved = new ArrayList<>();
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(SET_STOCK_SQL);
+            ps.setArray(1, connection.createArrayOf("bigint", ids));
+            ps.setArray(2, connection.createArrayOf("integer", quantities));
+            return ps;
+        }, (ResultSet rs) -> {
+            (rs.getBoolean(2) ? updated : unknown).add(rs.getLong(1));
+            if (rs.getBoolean(3)) {
+                belowReserved.add(rs.getLong(1));
+            }
+        });
+        return new StockLevelUpdate(updated, unknown, belowReserved);
+    }
+
+    @Override
+    public List<Long> allocateProductIds(int count) {
+        return jdbcTemplate.queryForList(ALLOCATE_IDS_SQL, Long.class, count);
+    }
+
+    @Override
+    public void batchInsertProducts(List<Product> products) {
+        if (products.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_SQL, products, products.size(), (ps, product) -> {
+            ps.setLong(1, product.getId());
+            ps.setString(2, product.getName());
+            ps.setString(3, product.getDescription());
+            ps.setBigDecimal(4, product.getPrice());
+            ps.setInt(5, product.getStockQuantity());
+            ps.setLong(6, product.getCategory().getId());
+            ps.setString(7, product.getImageUrl());
+            ps.setTimestamp(8, Timestamp.valueOf(product.getCreatedAt()));
+            ps.setTimestamp(9, Timestamp.valueOf(product.getUpdatedAt()));
+            ps.setBoolean(10, product.getAvailable());
+        });
+    }
+
+    private static Set<Long> failedRows(List<Map.Entry<Long, Integer>> rows, int[] counts) {
+        Set<Long> failed = new HashSet<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 1) {
+                failed.add(rows.get(i).getKey());
+            }
+        }
+        return failed;
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public List<Product> findNextByFilters(Long categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+            String sortBy, boolean ascending, Comparable<?> lastValue, Long lastId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Product> query = cb.createQuery(Product.class);
+        Root<Product> product = query.from(Product.class);
+        product.fetch("category");
+
+        List<Predicate> predicates = new ArrayList<>();
+        predicates.add(cb.isTrue(product.<Boolean>get("available")));
+        if (categoryId != null) {
+            predicates.add(cb.equal(product.get("category").get("id"), categoryId));
+        }
+        if (minPrice != null) {
+            predicates.add(cb.greaterThanOrEqualTo(product.<BigDecimal>get("price"), minPrice));
+        }
+        if (maxPrice != null) {
+            predicates.add(cb.lessThanOrEqualTo(product.<BigDecimal>get("price"), maxPrice));
+        }
+
+        Path<Long> id = product.get("id");
+        Path<Comparable> sortKey = product.get(sortBy);
+        if (lastId != null) {
+            Predicate afterId = ascending ? cb.greaterThan(id, lastId) : cb.lessThan(id, lastId);
+            if ("id".equals(sortBy)) {
+                predicates.add(afterId);
+            } else {
+                Comparable value = lastValue;
+                predicates.add(cb.or(
+                        ascending ? cb.greaterThan(sortKey, value) : cb.lessThan(sortKey, value),
+                        cb.and(cb.equal(sortKey, value), afterId)));
+            }
+        }
+
+        query.where(predicates.toArray(new Predicate[0]));
+        if ("id".equals(sortBy)) {
+            query.orderBy(ascending ? cb.asc(id) : cb.desc(id));
+        } else {
+            query.orderBy(ascending ? cb.asc(sortKey) : cb.desc(sortKey),
+                    ascending ? cb.asc(id) : cb.desc(id));
+        }
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
@@ -0,0 +1,48 @@
+package com.ecommerce.repository;
+
+import com.ecommerce.entity.StockHold;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface StockHoldRepository extends JpaRepository<StockHold, Long>, StockHoldRepositoryCustom {
+
+    List<StockHold> findByOrderId(Long orderId);
+
+    /**
+     * Holds of one order, locked so the expiry sweeper cannot release them
+     * while the order is being completed.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT h FROM StockHold h WHERE h.orderId = :orderId")
+    List<StockHold> lockByOrderId(@Param("orderId") Long orderId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT h FROM StockHold h WHERE h.orderId IN :orderIds")
+    List<StockHold> lockByOrderIdIn(@Param("orderIds") Collection<Long> orderIds);
+
+    /**
+     * Oldest expired holds, locked so that sweepers on other nodes skip them
+     * instead of waiting.
+     */
+    @Query(value = "SELECT * FROM stock_holds WHERE expires_at < :now " +
+            "ORDER BY expires_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<StockHold> lockExpired(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("DELETE FROM StockHold h WHERE h.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query("DELETE FROM StockHold h WHERE h.orderId = :orderId")
+    int deleteByOrderId(@Param("orderId") Long orderId);
+}
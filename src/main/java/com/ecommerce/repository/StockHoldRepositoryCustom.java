@@ -0,0 +1,15 @@
+package com.ecommerce.repository;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+public interface StockHoldRepositoryCustom {
+
+    /**
+     * Inserts one hold per product for an order in a single JDBC batch.
+     * {@code saveAll} cannot batch these because holds use IDENTITY ids.
+     *
+     * @param quantities units held, keyed by product id
+     */
+    void batchInsertHolds(Long orderId, Map<Long, Integer> quantities, LocalDateTime expiresAt);
+}
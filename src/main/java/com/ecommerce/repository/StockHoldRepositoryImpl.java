@@ -0,0 +1,36 @@
+package com.ecommerce.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class StockHoldRepositoryImpl implements StockHoldRepositoryCustom {
+
+    private static final String INSERT_SQL = "INSERT INTO stock_holds (order_id, product_id, quantity, " +
+            "expires_at, created_at) VALUES (?, ?, ?, ?, LOCALTIMESTAMP)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void batchInsertHolds(Long orderId, Map<Long, Integer> quantities, LocalDateTime expiresAt) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<Long, Integer>> rows = new ArrayList<>(quantities.entrySet());
+        Timestamp expires = Timestamp.valueOf(expiresAt);
+
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), (ps, row) -> {
+            ps.setLong(1, orderId);
+            ps.setLong(2, row.getKey());
+            ps.setInt(3, row.getValue());
+            ps.setTimestamp(4, expires);
+        });
+    }
+}
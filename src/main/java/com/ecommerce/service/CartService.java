@@ -0,0 +1,241 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.CartDTO;
+import com.ecommerce.dto.CartItemDTO;
+import com.ecommerce.dto.OrderDTO;
+import com.ecommerce.dto.OrderItemRequest;
+import com.ecommerce.dto.ProductDTO;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Server-side shopping carts, one Redis hash per user. Fields are product
+ * ids and values {@code quantity|price}, the price being the one the product
+ * had when it was last added. A cart expires {@code cart.ttl-days} after its
+ * last change.
+ *
+ * <p>Adding, setting and merging lines is one script call, and removing a
+ * line one HDEL, whatever the size of the cart. Prices come from the products
+ * cache, never from a query of their own. Reading a cart resolves names and
+ * current prices with one MGET on that cache, and checkout hands the
+ * resolved lines to {@link OrderService} so it does not load the products
+ * again.
+ */
+@Service
+@RequiredArgsConstructor
+public class CartService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartService.class);
+    private static final String KEY_PREFIX = "cart:";
+    private static final RedisScript<Long> UPDATE_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/cart-update.lua"), Long.class);
+    private static final RedisScript<Long> REMOVE_ORDERED_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/cart-remove-ordered.lua"), Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ProductService productService;
+    private final OrderService orderService;
+
+    @Value("${cart.ttl-days:30}")
+    private long timeToLiveDays;
+
+    @Value("${cart.max-lines:100}")
+    private int maxLines;
+
+    @Value("${cart.max-quantity:99}")
+    private int maxQuantity;
+
+    /**
+     * The cart with current product names and prices. Lines of products that
+     * no longer exist are dropped.
+     */
+    public CartDTO getCart(Long userId) {
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(key(userId));
+        if (entries.isEmpty()) {
+            return new CartDTO(List.of(), 0, BigDecimal.ZERO);
+        }
+
+        Map<Long, String> lines = new LinkedHashMap<>();
+        entries.forEach((productId, line) -> lines.put(Long.valueOf((String) productId), (String) line));
+        Map<Long, ProductDTO> products = productService.getProductsByIds(new ArrayList<>(lines.keySet())).stream()
+                .collect(Collectors.toMap(ProductDTO::getId, Function.identity()));
+
+        List<CartItemDTO> items = new ArrayList<>();
+        List<String> deleted = new ArrayList<>();
+        int totalQuantity = 0;
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        for (Map.Entry<Long, String> line : lines.entrySet()) {
+            ProductDTO product = products.get(line.getKey());
+            if (product == null) {
+                deleted.add(line.getKey().toString());
+                continue;
+            }
+            String[] parts = line.getValue().split("\\|", 2);
+            int quantity = Integer.parseInt(parts[0]);
+            BigDecimal subtotal = product.getPrice().multiply(BigDecimal.valueOf(quantity));
+            items.add(new CartItemDTO(product.getId(), product.getName(), quantity, product.getPrice(),
+                    new BigDecimal(parts[1]), subtotal, product.getAvailable()));
+            totalQuantity += quantity;
+            totalAmount = totalAmount.add(subtotal);
+        }
+
+        if (!deleted.isEmpty()) {
+            redisTemplate.opsForHash().delete(key(userId), deleted.toArray());
+        }
+        return new CartDTO(items, totalQuantity, totalAmount);
+    }
+
+    /**
+     * Adds {@code quantity} units of a product, on top of any already in the
+     * cart.
+     *
+     * @return the number of lines in the cart
+     */
+    public long addItem(Long userId, Long productId, int quantity) {
+        ProductDTO product = productService.getProductById(productId);
+        return update(userId, "add", List.of(new OrderItemRequest(productId, quantity)),
+                Map.of(productId, product.getPrice()));
+    }
+
+    /**
+     * Sets the quantity of a line; zero removes it.
+     *
+     * @return the number of lines in the cart
+     */
+    public long setQuantity(Long userId, Long productId, int quantity) {
+        if (quantity < 0) {
+            throw new IllegalArgumentException("Quantity cannot be negative");
+        }
+        if (quantity == 0) {
+            return removeItem(userId, productId);
+        }
+        ProductDTO product = productService.getProductById(productId);
+        return update(userId, "set", List.of(new OrderItemRequest(productId, quantity)),
+                Map.of(productId, product.getPrice()));
+    }
+
+    /**
+     * @return the number of lines left in the cart
+     */
+    public long removeItem(Long userId, Long productId) {
+        redisTemplate.opsForHash().delete(key(userId), productId.toString());
+        return redisTemplate.opsForHash().size(key(userId));
+    }
+
+    /**
+     * Adds the items of a cart kept by the storefront before the user signed
+     * in. Quantities of products already in the cart are added up; products
+     * that no longer exist are skipped.
+     */
+    public Map<String, Object> merge(Long userId, List<OrderItemRequest> items) {
+        Map<Long, Integer> quantities = items.stream().collect(Collectors.toMap(
+                OrderItemRequest::getProductId, OrderItemRequest::getQuantity, Integer::sum, LinkedHashMap::new));
+        Map<Long, BigDecimal> prices = productService.getProductsByIds(new ArrayList<>(quantities.keySet())).stream()
+                .collect(Collectors.toMap(ProductDTO::getId, ProductDTO::getPrice));
+
+        List<OrderItemRequest> merged = new ArrayList<>();
+        List<Long> skipped = new ArrayList<>();
+        quantities.forEach((productId, quantity) -> {
+            if (prices.containsKey(productId)) {
+                merged.add(new OrderItemRequest(productId, quantity));
+            } else {
+                skipped.add(productId);
+            }
+        });
+
+        long lines = merged.isEmpty()
+                ? redisTemplate.opsForHash().size(key(userId))
+                : update(userId, "add", merged, prices);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("merged", merged.size());
+        response.put("skippedProductIds", skipped);
+        response.put("lines", lines);
+        return response;
+    }
+
+    public void clear(Long userId) {
+        redisTemplate.delete(key(userId));
+    }
+
+    /**
+     * Places an order for the whole cart at current prices and, once the
+     * order is accepted, removes the ordered lines. Lines changed by another
+     * request while the order was placed stay in the cart.
+     *
+     * @param idempotencyKey scoped key of the checkout request, or
+     *                       {@code null}; an order already placed with the
+     *                       same key is returned and the cart left as it is
+     */
+    public OrderDTO checkout(Long userId, String paymentMethod, String idempotencyKey) {
+        Optional<OrderDTO> placed = orderService.findByIdempotencyKey(idempotencyKey);
+        if (placed.isPresent()) {
+            return placed.get();
+        }
+
+        CartDTO cart = getCart(userId);
+        if (cart.getItems().isEmpty()) {
+            throw new IllegalArgumentException("Cart is empty");
+        }
+        List<String> unavailable = cart.getItems().stream()
+                .filter(item -> !Boolean.TRUE.equals(item.getAvailable()))
+                .map(CartItemDTO::getProductName)
+                .collect(Collectors.toList());
+        if (!unavailable.isEmpty()) {
+            throw new IllegalArgumentException("No longer available, remove from the cart first: " + unavailable);
+        }
+
+        OrderDTO order = orderService.placeOrder(cart, paymentMethod, idempotencyKey);
+        removeOrdered(userId, cart.getItems());
+        logger.info("Cart of user {} checked out as order {}", userId, order.getId());
+        return order;
+    }
+
+    private void removeOrdered(Long userId, List<CartItemDTO> ordered) {
+        List<String> args = new ArrayList<>(ordered.size() * 2);
+        for (CartItemDTO item : ordered) {
+            args.add(item.getProductId().toString());
+            args.add(item.getQuantity().toString());
+        }
+        redisTemplate.execute(REMOVE_ORDERED_SCRIPT, List.of(key(userId)), args.toArray());
+    }
+
+    private long update(Long userId, String mode, List<OrderItemRequest> items, Map<Long, BigDecimal> prices) {
+        List<String> args = new ArrayList<>(4 + items.size() * 3);
+        args.add(mode);
+        args.add(Long.toString(Duration.ofDays(timeToLiveDays).toSeconds()));
+        args.add(Integer.toString(maxQuantity));
+        args.add(Integer.toString(maxLines));
+        for (OrderItemRequest item : items) {
+            args.add(item.getProductId().toString());
+            args.add(item.getQuantity().toString());
+            args.add(prices.get(item.getProductId()).toPlainString());
+        }
+
+        Long lines = redisTemplate.execute(UPDATE_SCRIPT, List.of(key(userId)), args.toArray());
+        if (lines != null && lines < 0) {
+            throw new IllegalArgumentException("A cart can hold at most " + maxLines + " products");
+        }
+        return lines != null ? lines : 0;
+    }
+
+    private static String key(Long userId) {
+        return KEY_PREFIX + userId;
+    }
+}
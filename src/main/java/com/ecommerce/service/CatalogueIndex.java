@@ -0,0 +1,502 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.ProductFacets;
+import com.ecommerce.dto.ProductIndexEntry;
+import com.ecommerce.event.ProductsChangedEvent;
+import com.ecommerce.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * In-process index of the available products that answers the storefront
+ * listing filters (category, price range) and facet counts without a
+ * database round trip.
+ *
+ * <p>Products are kept in immutable slices, one per category and one for the
+ * whole catalogue. A slice holds its entries in price, id and creation
+ * order, with the prices also in a primitive array, so a price range is two
+ * binary searches and a page is read straight out of one of the orderings.
+ * Readers never lock: writers build new slices and swap them in.
+ *
+ * <p>{@link ProductsChangedEvent}s queue product ids, which are re-read in
+ * one query every {@code catalogue.index.refresh-interval-ms} and merged
+ * into copies of the slices they touch. Ids whose entry actually changed
+ * are sent to the other nodes over {@link #CHANGES_TOPIC}. The index is
+ * streamed from the database at startup, and again every
+ * {@code catalogue.index.rebuild-interval-ms} in case a message was lost.
+ *
+ * <p>Holds ids and sort keys only; callers resolve page content through the
+ * products cache. Disabled unless {@code catalogue.index.enabled} is set.
+ */
+@Service
+public class CatalogueIndex implements MessageListener {
+
+    public static final String CHANGES_TOPIC = "catalogue:changes";
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogueIndex.class);
+    private static final String SEPARATOR = "|";
+    // Name order follows the database collation, so it is left to the database
+    private static final Set<String> SORT_KEYS = Set.of("id", "price", "createdAt");
+
+    private static final Comparator<Entry> BY_PRICE =
+            Comparator.comparingLong(Entry::price).thenComparingLong(Entry::id);
+    private static final Comparator<Entry> BY_ID = Comparator.comparingLong(Entry::id);
+    private static final Comparator<Entry> BY_CREATED_AT =
+            Comparator.comparingLong(Entry::createdAt).thenComparingLong(Entry::id);
+
+    private final ProductRepository productRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final TransactionTemplate readTransaction;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Set<Long> localChanges = ConcurrentHashMap.newKeySet();
+    private final Set<Long> remoteChanges = ConcurrentHashMap.newKeySet();
+
+    @Value("${catalogue.index.enabled:false}")
+    private boolean enabled;
+
+    @Value("${catalogue.index.price-buckets:25,50,100,250,500,1000}")
+    private BigDecimal[] priceBuckets;
+
+    private volatile Snapshot snapshot;
+
+    // Indexed entries by product id; guarded by this
+    private Map<Long, Entry> entries = new HashMap<>();
+
+    public CatalogueIndex(ProductRepository productRepository, StringRedisTemplate redisTemplate,
+            PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.redisTemplate = redisTemplate;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return whether {@link #find} can answer a query sorted like
+     *         {@code pageable}: the index is loaded and the sort is a single
+     *         id, price or createdAt order
+     */
+    public boolean canServe(Pageable pageable) {
+        if (snapshot == null) {
+            return false;
+        }
+        List<Sort.Order> orders = pageable.getSort().toList();
+        return orders.size() == 1 && SORT_KEYS.contains(orders.get(0).getProperty());
+    }
+
+    /**
+     * Ids of one page of available products matching the filters, in the
+     * order of {@code pageable}, with ties broken by id. Only call after
+     * {@link #canServe} returned true.
+     */
+    public Hits find(Long categoryId, BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable) {
+        Slice slice = requireSnapshot().slice(categoryId);
+        long min = minPrice != null ? cents(minPrice, RoundingMode.CEILING) : Long.MIN_VALUE;
+        long max = maxPrice != null ? cents(maxPrice, RoundingMode.FLOOR) : Long.MAX_VALUE;
+        int from = slice.lowerBound(min);
+        int to = slice.upperBound(max);
+        int total = Math.max(to - from, 0);
+        if (pageable.getOffset() >= total) {
+            return new Hits(List.of(), total);
+        }
+        int offset = (int) pageable.getOffset();
+        int count = Math.min(pageable.getPageSize(), total - offset);
+
+        Sort.Order order = pageable.getSort().toList().get(0);
+        boolean ascending = order.isAscending();
+        List<Long> ids = new ArrayList<>(count);
+        if (order.getProperty().equals("price")) {
+            addRange(slice.byPrice, from, to, offset, count, ascending, ids);
+            return new Hits(ids, total);
+        }
+
+        boolean byId = order.getProperty().equals("id");
+        Entry[] ordered = byId ? slice.byId : slice.byCreatedAt;
+        if (total == slice.size()) {
+            addRange(ordered, 0, total, offset, count, ascending, ids);
+        } else if ((double) (offset + count) * slice.size() / total < total) {
+            // Matches are dense enough that walking the ordering beats sorting them
+            int skip = offset;
+            for (int i = 0; i < ordered.length && ids.size() < count; i++) {
+                Entry entry = ordered[ascending ? i : ordered.length - 1 - i];
+                if (entry.price() >= min && entry.price() <= max && skip-- <= 0) {
+                    ids.add(entry.id());
+                }
+            }
+        } else {
+            Entry[] matching = Arrays.copyOfRange(slice.byPrice, from, to);
+            Arrays.sort(matching, byId ? BY_ID : BY_CREATED_AT);
+            addRange(matching, 0, matching.length, offset, count, ascending, ids);
+        }
+        return new Hits(ids, total);
+    }
+
+    /**
+     * Facet counts for a listing: products per category within the price
+     * range, and products per price bucket within the category.
+     */
+    public ProductFacets facets(Long categoryId, BigDecimal minPrice, BigDecimal maxPrice) {
+        Snapshot current = requireSnapshot();
+        long min = minPrice != null ? cents(minPrice, RoundingMode.CEILING) : Long.MIN_VALUE;
+        long max = maxPrice != null ? cents(maxPrice, RoundingMode.FLOOR) : Long.MAX_VALUE;
+
+        Map<Long, Long> categories = new TreeMap<>();
+        current.categories().forEach((id, slice) -> {
+            long count = Math.max(slice.upperBound(max) - slice.lowerBound(min), 0);
+            if (count > 0) {
+                categories.put(id, count);
+            }
+        });
+
+        Slice slice = current.slice(categoryId);
+        List<ProductFacets.PriceBucket> buckets = new ArrayList<>(priceBuckets.length + 1);
+        BigDecimal lower = null;
+        for (int i = 0; i <= priceBuckets.length; i++) {
+            BigDecimal upper = i < priceBuckets.length ? priceBuckets[i] : null;
+            int from = lower != null ? slice.lowerBound(cents(lower, RoundingMode.CEILING)) : 0;
+            int to = upper != null ? slice.lowerBound(cents(upper, RoundingMode.CEILING)) : slice.size();
+            buckets.add(new ProductFacets.PriceBucket(lower, upper, to - from));
+            lower = upper;
+        }
+        return new ProductFacets(categories, buckets);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsChanged(ProductsChangedEvent event) {
+        if (enabled) {
+            localChanges.addAll(event.getProductIds());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        // Format: nodeId|id,id,...
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 2);
+        if (!enabled || parts.length < 2 || nodeId.equals(parts[0])) {
+            return;
+        }
+        Arrays.stream(parts[1].split(","))
+                .filter(id -> !id.isEmpty())
+                .map(Long::valueOf)
+                .forEach(remoteChanges::add);
+    }
+
+    /**
+     * Re-reads the products queued since the last run and merges them in.
+     */
+    @Scheduled(fixedDelayString = "${catalogue.index.refresh-interval-ms:200}")
+    public synchronized void refreshPending() {
+        if (!enabled || snapshot == null || (localChanges.isEmpty() && remoteChanges.isEmpty())) {
+            return;
+        }
+        Set<Long> local = drain(localChanges);
+        Set<Long> ids = drain(remoteChanges);
+        ids.addAll(local);
+
+        Set<Long> changed = apply(ids, productRepository.findIndexEntriesByIdIn(ids));
+        changed.retainAll(local);
+        if (!changed.isEmpty()) {
+            publish(changed);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        rebuild();
+    }
+
+    @Scheduled(initialDelayString = "${catalogue.index.rebuild-interval-ms:600000}",
+            fixedDelayString = "${catalogue.index.rebuild-interval-ms:600000}")
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        readTransaction.executeWithoutResult(status -> {
+            try (Stream<ProductIndexEntry> rows = productRepository.streamIndexEntries()) {
+                load(rows);
+            }
+        });
+        logger.info("Catalogue index loaded {} products in {} categories in {} ms",
+                entries.size(), snapshot.categories().size(), System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Replaces the whole index with {@code rows}.
+     */
+    synchronized void load(Stream<ProductIndexEntry> rows) {
+        Map<Long, Entry> loaded = new HashMap<>();
+        rows.forEach(row -> loaded.put(row.getId(), toEntry(row)));
+
+        Map<Long, Slice> categories = loaded.values().stream()
+                .collect(Collectors.groupingBy(Entry::categoryId)).entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, category -> Slice.of(category.getValue())));
+        entries = loaded;
+        snapshot = new Snapshot(Slice.of(loaded.values()), Map.copyOf(categories));
+    }
+
+    /**
+     * Brings the entries of {@code ids} in line with {@code rows}, the
+     * current state of those of them that are available.
+     *
+     * @return the ids whose entry was added, changed or removed
+     */
+    synchronized Set<Long> apply(Collection<Long> ids, List<ProductIndexEntry> rows) {
+        Map<Long, ProductIndexEntry> rowsById = rows.stream()
+                .collect(Collectors.toMap(ProductIndexEntry::getId, Function.identity()));
+
+        Set<Long> changed = new HashSet<>();
+        List<Entry> removed = new ArrayList<>();
+        List<Entry> added = new ArrayList<>();
+        for (Long id : ids) {
+            Entry previous = entries.get(id);
+            ProductIndexEntry row = rowsById.get(id);
+            Entry next = row != null ? toEntry(row) : null;
+            if (Objects.equals(previous, next)) {
+                continue;
+            }
+            changed.add(id);
+            if (previous != null) {
+                entries.remove(id);
+                removed.add(previous);
+            }
+            if (next != null) {
+                entries.put(id, next);
+                added.add(next);
+            }
+        }
+        if (changed.isEmpty()) {
+            return changed;
+        }
+
+        Map<Long, List<Entry>> removedByCategory = removed.stream().collect(Collectors.groupingBy(Entry::categoryId));
+        Map<Long, List<Entry>> addedByCategory = added.stream().collect(Collectors.groupingBy(Entry::categoryId));
+        Set<Long> touched = new HashSet<>(removedByCategory.keySet());
+        touched.addAll(addedByCategory.keySet());
+
+        Snapshot current = snapshot;
+        Map<Long, Slice> categories = new HashMap<>(current.categories());
+        for (Long categoryId : touched) {
+            Slice slice = categories.getOrDefault(categoryId, Slice.EMPTY).merge(
+                    removedByCategory.getOrDefault(categoryId, List.of()),
+                    addedByCategory.getOrDefault(categoryId, List.of()));
+            if (slice.size() == 0) {
+                categories.remove(categoryId);
+            } else {
+                categories.put(categoryId, slice);
+            }
+        }
+        snapshot = new Snapshot(current.all().merge(removed, added), Map.copyOf(categories));
+        logger.debug("Catalogue index updated for products {}", changed);
+        return changed;
+    }
+
+    private void publish(Set<Long> productIds) {
+        String ids = productIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        try {
+            redisTemplate.convertAndSend(CHANGES_TOPIC, nodeId + SEPARATOR + ids);
+        } catch (Exception e) {
+            logger.warn("Could not publish catalogue changes for products {}: {}", ids, e.getMessage());
+        }
+    }
+
+    private Snapshot requireSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            throw new IllegalStateException("Catalogue index is not loaded (catalogue.index.enabled)");
+        }
+        return current;
+    }
+
+    private static Set<Long> drain(Set<Long> queue) {
+        Set<Long> drained = new HashSet<>();
+        for (Long id : queue) {
+            if (queue.remove(id)) {
+                drained.add(id);
+            }
+        }
+        return drained;
+    }
+
+    private static void addRange(Entry[] ordered, int from, int to, int offset, int count, boolean ascending,
+            List<Long> ids) {
+        for (int i = 0; i < count; i++) {
+            ids.add(ordered[ascending ? from + offset + i : to - 1 - offset - i].id());
+        }
+    }
+
+    private static Entry toEntry(ProductIndexEntry row) {
+        LocalDateTime createdAt = row.getCreatedAt();
+        long createdAtMicros = createdAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + createdAt.getNano() / 1000;
+        return new Entry(row.getId(), row.getCategoryId(), cents(row.getPrice(), RoundingMode.HALF_UP),
+                createdAtMicros);
+    }
+
+    private static long cents(BigDecimal price, RoundingMode rounding) {
+        return price.setScale(2, rounding).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Ids of one page of products and the number of products matching in
+     * total.
+     */
+    public record Hits(List<Long> ids, long total) {
+    }
+
+    private record Entry(long id, long categoryId, long price, long createdAt) {
+    }
+
+    private record Snapshot(Slice all, Map<Long, Slice> categories) {
+
+        Slice slice(Long categoryId) {
+            return categoryId == null ? all : categories.getOrDefault(categoryId, Slice.EMPTY);
+        }
+    }
+
+    /**
+     * A set of entries in each supported order. Never modified once built.
+     */
+    private static final class Slice {
+
+        static final Slice EMPTY = new Slice(new Entry[0], new Entry[0], new Entry[0]);
+
+        final Entry[] byPrice;
+        final long[] prices;
+        final Entry[] byId;
+        final Entry[] byCreatedAt;
+
+        Slice(Entry[] byPrice, Entry[] byId, Entry[] byCreatedAt) {
+            this.byPrice = byPrice;
+            this.prices = Arrays.stream(byPrice).mapToLong(Entry::price).toArray();
+            this.byId = byId;
+            this.byCreatedAt = byCreatedAt;
+        }
+
+        static Slice of(Collection<Entry> entries) {
+            Entry[] byPrice = entries.toArray(new Entry[0]);
+            Entry[] byId = byPrice.clone();
+            Entry[] byCreatedAt = byPrice.clone();
+            Arrays.sort(byPrice, BY_PRICE);
+            Arrays.sort(byId, BY_ID);
+            Arrays.sort(byCreatedAt, BY_CREATED_AT);
+            return new Slice(byPrice, byId, byCreatedAt);
+        }
+
+        int size() {
+            return byPrice.length;
+        }
+
+        /**
+         * @return the first position with a price of at least {@code price}
+         */
+        int lowerBound(long price) {
+            int low = 0;
+            int high = prices.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (prices[mid] < price) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return the first position with a price above {@code price}
+         */
+        int upperBound(long price) {
+            return price == Long.MAX_VALUE ? prices.length : lowerBound(price + 1);
+        }
+
+        Slice merge(List<Entry> removed, List<Entry> added) {
+            return new Slice(
+                    merge(byPrice, removed, added, BY_PRICE),
+                    merge(byId, removed, added, BY_ID),
+                    merge(byCreatedAt, removed, added, BY_CREATED_AT));
+        }
+
+        /**
+         * Copies {@code current} without {@code removed} and with
+         * {@code added} in place, in runs between the changed positions.
+         */
+        private static Entry[] merge(Entry[] current, List<Entry> removed, List<Entry> added,
+                Comparator<Entry> order) {
+            int[] removedAt = removed.stream()
+                    .mapToInt(entry -> Arrays.binarySearch(current, entry, order))
+                    .filter(position -> position >= 0)
+                    .sorted()
+                    .toArray();
+            Entry[] inserts = added.toArray(new Entry[0]);
+            Arrays.sort(inserts, order);
+
+            Entry[] merged = new Entry[current.length - removedAt.length + inserts.length];
+            int source = 0;
+            int target = 0;
+            int nextRemoved = 0;
+            for (int i = 0; i <= inserts.length; i++) {
+                int insertAt = current.length;
+                if (i < inserts.length) {
+                    int found = Arrays.binarySearch(current, inserts[i], order);
+                    insertAt = found >= 0 ? found : -found - 1;
+                }
+                while (source < insertAt) {
+                    int end = nextRemoved < removedAt.length && removedAt[nextRemoved] < insertAt
+                            ? removedAt[nextRemoved]
+                            : insertAt;
+                    System.arraycopy(current, source, merged, target, end - source);
+                    target += end - source;
+                    source = end;
+                    if (source < insertAt) {
+                        // Skip the removed entry at this position
+                        source++;
+                        nextRemoved++;
+                    }
+                }
+                if (i < inserts.length) {
+                    merged[target++] = inserts[i];
+                }
+            }
+            return merged;
+        }
+    }
+}
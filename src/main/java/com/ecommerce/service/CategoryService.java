@@ -1,10 +1,15 @@
 package com.ecommerce.service;
 
+import com.ecommerce.cache.CacheGenerations;
 import com.ecommerce.dto.CategoryDTO;
 import com.ecommerce.entity.Category;
 import com.ecommerce.exception.ResourceNotFoundException;
 import com.ecommerce.repository.CategoryRepository;
+import com.ecommerce.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -15,8 +20,14 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class CategoryService {
 
+    private static final String CATEGORIES_GENERATION = "categories";
+
     private final CategoryRepository categoryRepository;
+    private final ProductRepository productRepository;
+    private final CacheGenerations cacheGenerations;
+    private final CacheManager cacheManager;
 
+    @Cacheable(value = "categories", key = "'all:v' + @cacheGenerations.current('categories')")
     public List<CategoryDTO> getAllCategories() {
         return categoryRepository.findAll().stream()
                 .map(this::mapToDTO)
@@ -40,6 +51,7 @@ public class CategoryService {
         category.setDescription(categoryDTO.getDescription());
 
         Category savedCategory = categoryRepository.save(category);
+        cacheGenerations.bump(CATEGORIES_GENERATION);
         return mapToDTO(savedCategory);
     }
 
@@ -53,6 +65,8 @@ public class CategoryService {
                 throw new RuntimeException("Category with name '" + categoryDTO.getName() + "' already exists");
             }
             category.setName(categoryDTO.getName());
+            // Cached products carry the category name
+            evictProductsOfCategory(id);
         }
 
         if (categoryDTO.getDescription() != null) {
@@ -60,6 +74,7 @@ public class CategoryService {
         }
 
         Category updatedCategory = categoryRepository.save(category);
+        cacheGenerations.bump(CATEGORIES_GENERATION);
         return mapToDTO(updatedCategory);
     }
 
@@ -67,7 +82,19 @@ public class CategoryService {
     public void deleteCategory(Long id) {
         Category category = categoryRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Category", "id", id));
+        // Deleting a category cascades to its products
+        evictProductsOfCategory(id);
         categoryRepository.delete(category);
+        cacheGenerations.bump(CATEGORIES_GENERATION);
+    }
+
+    private void evictProductsOfCategory(Long categoryId) {
+        Cache cache = cacheManager.getCache("products");
+        if (cache != null) {
+            productRepository.findIdsByCategoryId(categoryId).forEach(cache::evict);
+        }
+        cacheGenerations.bump(ProductListingService.LISTINGS_GENERATION);
+        cacheGenerations.bump(ProductListingService.COUNTS_GENERATION);
     }
 
     private CategoryDTO mapToDTO(Category category) {
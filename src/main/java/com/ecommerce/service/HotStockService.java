@@ -0,0 +1,453 @@
+package com.ecommerce.service;
+
+import com.ecommerce.event.ProductsChangedEvent;
+import com.ecommerce.exception.ResourceNotFoundException;
+import com.ecommerce.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Redis-authoritative stock for "hot" products, for flash sales where every
+ * order would otherwise update the same Postgres row.
+ *
+ * <p>For a hot product the available units live in a Redis counter. Orders
+ * reserve against it with a Lua script when they are placed; a confirmed
+ * reservation becomes a pending deduction, and {@link #flushPending()}
+ * writes pending deductions to {@code products} in one JDBC batch.
+ * Invariant per hot product:
+ * <pre>available = stock_quantity - pending - reserved</pre>
+ * which is what {@link #reconcile(Long)} restores, on startup and whenever
+ * Postgres stock is changed directly. Flush and reconcile run under a Redis
+ * lock so only one node touches the same rows at a time. Every failure
+ * window leaves Postgres lower than the truth, never higher, so a crash
+ * can undersell but not oversell.
+ *
+ * <p>Disabled unless {@code inventory.hot-stock.enabled} is set; products
+ * are then marked hot one by one through the inventory API.
+ */
+@Service
+public class HotStockService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotStockService.class);
+
+    private static final String HOT_PRODUCTS_KEY = "stock:hot";
+    private static final String AVAILABLE_KEY_PREFIX = "stock:available:";
+    private static final String RESERVED_KEY = "stock:reserved";
+    private static final String PENDING_KEY = "stock:pending";
+    private static final String RESERVATION_KEY_PREFIX = "stock:reservation:";
+    private static final String LOCK_KEY = "stock:flush:lock";
+    private static final Duration LOCK_TIMEOUT = Duration.ofSeconds(30);
+    private static final long LOCK_WAIT_MILLIS = 10000;
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> RESERVE_SCRIPT = script("stock-reserve.lua", List.class);
+    private static final RedisScript<Long> CONFIRM_SCRIPT = script("stock-confirm.lua", Long.class);
+    private static final RedisScript<Long> RELEASE_SCRIPT = script("stock-release.lua", Long.class);
+    private static final RedisScript<Long> SETTLE_SCRIPT = script("stock-settle.lua", Long.class);
+    private static final RedisScript<Long> RECONCILE_SCRIPT = script("stock-reconcile.lua", Long.class);
+    private static final RedisScript<Long> UNLOCK_SCRIPT = script("unlock.lua", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ProductRepository productRepository;
+    private final CacheManager cacheManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate flushTransaction;
+    private final Set<Long> deferredReconciles = ConcurrentHashMap.newKeySet();
+
+    @Value("${inventory.hot-stock.enabled:false}")
+    private boolean enabled;
+
+    public HotStockService(StringRedisTemplate redisTemplate, ProductRepository productRepository,
+            CacheManager cacheManager, ApplicationEventPublisher eventPublisher,
+            PlatformTransactionManager transactionManager) {
+        this.redisTemplate = redisTemplate;
+        this.productRepository = productRepository;
+        this.cacheManager = cacheManager;
+        this.eventPublisher = eventPublisher;
+        // Flushes commit on their own, whatever transaction triggered them
+        this.flushTransaction = new TransactionTemplate(transactionManager);
+        this.flushTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Set<Long> getHotProductIds() {
+        if (!enabled) {
+            return Set.of();
+        }
+        Set<String> members = redisTemplate.opsForSet().members(HOT_PRODUCTS_KEY);
+        if (members == null) {
+            return Set.of();
+        }
+        return members.stream().map(Long::valueOf).collect(Collectors.toSet());
+    }
+
+    public boolean isHot(Long productId) {
+        return enabled && Boolean.TRUE.equals(
+                redisTemplate.opsForSet().isMember(HOT_PRODUCTS_KEY, productId.toString()));
+    }
+
+    /**
+     * Moves a product's stock to Redis. Orders placed before this call still
+     * deduct from Postgres when they complete; {@link #reconcileAfterCommit}
+     * corrects the counter for them.
+     */
+    public void enable(Long productId) {
+        requireEnabled();
+        withLock(() -> {
+            reconcileLocked(productId);
+            redisTemplate.opsForSet().add(HOT_PRODUCTS_KEY, productId.toString());
+        });
+        logger.info("Product {} now reserves stock in Redis", productId);
+    }
+
+    /**
+     * Moves a product back to Postgres. Pending deductions are flushed under
+     * the lock first, so the Postgres path never sees stock that Redis
+     * already sold; fails if the lock cannot be taken. Reservations still
+     * open keep their units and are written through the normal flush once
+     * confirmed.
+     */
+    public void disable(Long productId) {
+        requireEnabled();
+        withLock(() -> {
+            flushLocked();
+            redisTemplate.opsForSet().remove(HOT_PRODUCTS_KEY, productId.toString());
+            redisTemplate.delete(AVAILABLE_KEY_PREFIX + productId);
+        });
+        logger.info("Product {} reserves stock in Postgres again", productId);
+    }
+
+    /**
+     * Atomically reserves the hot lines of an order. Lines for products that
+     * are not hot are ignored and left to the Postgres path. If the calling
+     * transaction rolls back, the reservation is released again.
+     *
+     * @return null if everything was reserved, otherwise the first line
+     *         that could not be
+     */
+    public Shortfall reserve(Long orderId, Map<Long, Integer> quantities) {
+        if (!enabled || quantities.isEmpty()) {
+            return null;
+        }
+
+        List<String> keys = new ArrayList<>();
+        keys.add(HOT_PRODUCTS_KEY);
+        keys.add(RESERVED_KEY);
+        keys.add(RESERVATION_KEY_PREFIX + orderId);
+        List<Long> productIds = new ArrayList<>(quantities.keySet());
+        List<String> args = new ArrayList<>();
+        for (Long productId : productIds) {
+            keys.add(AVAILABLE_KEY_PREFIX + productId);
+            args.add(productId.toString());
+            args.add(quantities.get(productId).toString());
+        }
+
+        List<?> result = redisTemplate.execute(RESERVE_SCRIPT, keys, args.toArray());
+        if (((Number) result.get(0)).longValue() == 0) {
+            Long productId = productIds.get(((Number) result.get(1)).intValue() - 1);
+            return new Shortfall(productId, ((Number) result.get(2)).intValue());
+        }
+
+        if (((Number) result.get(1)).longValue() > 0
+                && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        releaseNow(orderId);
+                    }
+                }
+            });
+        }
+        return null;
+    }
+
+    /**
+     * @return the units reserved in Redis for an order, keyed by product id
+     */
+    public Map<Long, Integer> getReservation(Long orderId) {
+        if (!enabled) {
+            return Map.of();
+        }
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(RESERVATION_KEY_PREFIX + orderId);
+        Map<Long, Integer> reservation = new HashMap<>();
+        entries.forEach((productId, quantity) ->
+                reservation.put(Long.valueOf((String) productId), Integer.valueOf((String) quantity)));
+        return reservation;
+    }
+
+    /**
+     * Turns an order's reservation into a pending deduction. Inside a
+     * transaction this happens only once it commits.
+     */
+    public void confirm(Long orderId) {
+        if (enabled) {
+            afterCommit(() -> redisTemplate.execute(CONFIRM_SCRIPT,
+                    List.of(RESERVATION_KEY_PREFIX + orderId, RESERVED_KEY, PENDING_KEY)));
+        }
+    }
+
+    /**
+     * Returns an order's reserved units to the available counters. Inside a
+     * transaction this happens only once it commits.
+     */
+    public void release(Long orderId) {
+        if (enabled) {
+            afterCommit(() -> releaseNow(orderId));
+        }
+    }
+
+    private void releaseNow(Long orderId) {
+        // A reservation is written once by the reserve script, so its products cannot change under us
+        Set<Long> productIds = getReservation(orderId).keySet();
+        if (productIds.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>();
+        keys.add(RESERVATION_KEY_PREFIX + orderId);
+        keys.add(RESERVED_KEY);
+        List<String> args = new ArrayList<>();
+        for (Long productId : productIds) {
+            keys.add(AVAILABLE_KEY_PREFIX + productId);
+            args.add(productId.toString());
+        }
+        redisTemplate.execute(RELEASE_SCRIPT, keys, args.toArray());
+    }
+
+    /**
+     * Resets the counters of any hot products among {@code productIds} once
+     * the current transaction commits, for code that changed their stock in
+     * Postgres directly. The caller's change is committed by then, so a
+     * reconcile that fails is not thrown back at it but retried by the next
+     * {@link #flushPending()}.
+     */
+    public void reconcileAfterCommit(Collection<Long> productIds) {
+        if (!enabled || productIds.isEmpty()) {
+            return;
+        }
+        Set<Long> hot = getHotProductIds();
+        List<Long> toReconcile = productIds.stream().filter(hot::contains).toList();
+        if (!toReconcile.isEmpty()) {
+            afterCommit(() -> {
+                try {
+                    withLock(() -> toReconcile.forEach(this::reconcileLocked));
+                } catch (RuntimeException e) {
+                    logger.error("Could not reconcile Redis stock for products {}, retrying on the next flush",
+                            toReconcile, e);
+                    deferredReconciles.addAll(toReconcile);
+                }
+            });
+        }
+    }
+
+    public void reconcile(Long productId) {
+        withLock(() -> reconcileLocked(productId));
+    }
+
+    /**
+     * Redis and Postgres may have drifted while this node was down, for
+     * example if a flush committed but its settle step never ran.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        Set<Long> hot = getHotProductIds();
+        withLock(() -> hot.forEach(this::reconcileLocked));
+        logger.info("Reconciled Redis stock for {} hot products", hot.size());
+    }
+
+    /**
+     * Write-behind: applies all pending deductions to Postgres in one batch,
+     * then removes exactly those amounts from the pending hash. A product
+     * whose stock was lowered below what Redis sold is deducted down to zero
+     * and stops selling in Redis until its stock is set again.
+     */
+    @Scheduled(fixedDelayString = "${inventory.hot-stock.flush-interval-ms:1000}")
+    public void flushPending() {
+        if (!enabled) {
+            return;
+        }
+        String token = UUID.randomUUID().toString();
+        if (!tryLock(token)) {
+            return;
+        }
+        try {
+            flushLocked();
+            reconcileDeferredLocked();
+        } finally {
+            unlock(token);
+        }
+    }
+
+    /**
+     * Applies pending deductions before a caller overwrites stock, waiting
+     * for the lock a scheduled flush may hold; fails if it cannot be taken,
+     * so the new figure is never written with sold units still unapplied.
+     */
+    public void flushBeforeStockChange() {
+        requireEnabled();
+        withLock(this::flushLocked);
+    }
+
+    private void reconcileDeferredLocked() {
+        for (Long productId : List.copyOf(deferredReconciles)) {
+            deferredReconciles.remove(productId);
+            try {
+                reconcileLocked(productId);
+            } catch (ResourceNotFoundException e) {
+                logger.warn("Product {} no longer exists, dropping its deferred reconcile", productId);
+            } catch (RuntimeException e) {
+                logger.error("Deferred reconcile of product {} failed, retrying on the next flush", productId, e);
+                deferredReconciles.add(productId);
+            }
+        }
+    }
+
+    private void flushLocked() {
+        Map<Long, Integer> pending = new HashMap<>();
+        redisTemplate.opsForHash().entries(PENDING_KEY).forEach((productId, quantity) -> {
+            int units = Integer.parseInt((String) quantity);
+            if (units > 0) {
+                pending.put(Long.valueOf((String) productId), units);
+            }
+        });
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        Set<Long> failed = flushTransaction.execute(status -> {
+            Set<Long> insufficient = productRepository.batchDecrementStock(pending);
+            if (!insufficient.isEmpty()) {
+                // Redis already sold these units, so they are deducted anyway, down to zero
+                Map<Long, Integer> clamped = new HashMap<>();
+                insufficient.forEach(productId -> clamped.put(productId, pending.get(productId)));
+                productRepository.batchDecrementStockClamped(clamped);
+            }
+            return insufficient;
+        });
+
+        List<String> args = new ArrayList<>();
+        pending.forEach((productId, units) -> {
+            args.add(productId.toString());
+            args.add(units.toString());
+        });
+        redisTemplate.execute(SETTLE_SCRIPT, List.of(PENDING_KEY), args.toArray());
+
+        if (failed != null && !failed.isEmpty()) {
+            // Postgres held less than Redis believed. Reconciling would offer
+            // whatever the clamped deduction left, which may be units held or
+            // already sold, so stop selling until stock is set again.
+            logger.error("Write-behind found less stock than Redis sold for products {}; "
+                    + "deducted down to zero and stopped their sales until stock is reset", failed);
+            failed.forEach(productId -> redisTemplate.opsForValue().set(AVAILABLE_KEY_PREFIX + productId, "0"));
+        }
+
+        Cache cache = cacheManager.getCache("products");
+        if (cache != null) {
+            pending.keySet().forEach(cache::evict);
+        }
+        eventPublisher.publishEvent(new ProductsChangedEvent(pending.keySet()));
+        logger.debug("Flushed pending stock deductions for {} products", pending.size());
+    }
+
+    private void reconcileLocked(Long productId) {
+        Integer stock = productRepository.findStockQuantityById(productId);
+        if (stock == null) {
+            throw new ResourceNotFoundException("Product", "id", productId);
+        }
+        Long available = redisTemplate.execute(RECONCILE_SCRIPT,
+                List.of(AVAILABLE_KEY_PREFIX + productId, PENDING_KEY, RESERVED_KEY),
+                productId.toString(), stock.toString());
+        logger.debug("Redis stock for product {} set to {}", productId, available);
+    }
+
+    private void withLock(Runnable action) {
+        String token = UUID.randomUUID().toString();
+        long deadline = System.currentTimeMillis() + LOCK_WAIT_MILLIS;
+        while (!tryLock(token)) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Timed out waiting for the stock flush lock");
+            }
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for the stock flush lock", e);
+            }
+        }
+        try {
+            action.run();
+        } finally {
+            unlock(token);
+        }
+    }
+
+    private boolean tryLock(String token) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(LOCK_KEY, token, LOCK_TIMEOUT));
+    }
+
+    private void unlock(String token) {
+        redisTemplate.execute(UNLOCK_SCRIPT, List.of(LOCK_KEY), token);
+    }
+
+    private void requireEnabled() {
+        if (!enabled) {
+            throw new IllegalStateException("Hot stock mode is disabled (inventory.hot-stock.enabled)");
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static <T> RedisScript<T> script(String name, Class<T> resultType) {
+        return RedisScript.of(new ClassPathResource("redis/" + name), resultType);
+    }
+
+    /**
+     * A hot line that could not be reserved, with the units that were left.
+     */
+    public record Shortfall(Long productId, int available) {
+    }
+}
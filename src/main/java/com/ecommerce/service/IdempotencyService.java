@@ -0,0 +1,166 @@
+package com.ecommerce.service;
+
+import com.ecommerce.cache.RedisCircuitBreaker;
+import com.ecommerce.exception.RequestInProgressException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs a request at most once per client {@code Idempotency-Key}, so that
+ * clients can safely retry a slow order placement.
+ *
+ * <p>The key is claimed in Redis with SET NX before any work starts and,
+ * once the work is done, holds its result for
+ * {@code orders.idempotency.ttl-hours}. A replay gets the stored result
+ * back without touching the database. A duplicate that arrives while the
+ * first request is still running waits up to
+ * {@code orders.idempotency.wait-timeout-ms} for its result. If the first
+ * request fails the key is released, so the retry runs again. Keys are
+ * scoped to the user and bound to a hash of the request body.
+ *
+ * <p>The result is stored only after the action's transaction commits, so a
+ * crash in between would let a retry run the action again. The action
+ * therefore receives the scoped key to record with what it creates, under a
+ * unique constraint: orders keep it on their row and return the existing
+ * order when the key comes back.
+ */
+@Service
+@RequiredArgsConstructor
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+    private static final String KEY_PREFIX = "idempotency:";
+    private static final char SEPARATOR = '|';
+    private static final int MAX_KEY_LENGTH = 100;
+    private static final long POLL_INTERVAL_MILLIS = 50;
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisCircuitBreaker circuitBreaker;
+    private final ObjectMapper objectMapper;
+
+    @Value("${orders.idempotency.ttl-hours:24}")
+    private long timeToLiveHours;
+
+    @Value("${orders.idempotency.pending-ttl-seconds:60}")
+    private long pendingTimeToLiveSeconds;
+
+    @Value("${orders.idempotency.wait-timeout-ms:10000}")
+    private long waitTimeoutMillis;
+
+    /**
+     * Runs {@code action} unless a request with the same key already ran, in
+     * which case its result is returned instead.
+     *
+     * @param scope   what the key belongs to, such as the user and operation
+     * @param request the request body, which a reused key must match
+     * @param action  runs the request, given the scoped key to record with
+     *                its result
+     */
+    public <T> T execute(String scope, String idempotencyKey, Object request, Class<T> resultType,
+            Function<String, T> action) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(
+                    "Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+        String scopedKey = scope + ":" + idempotencyKey;
+        String key = KEY_PREFIX + scopedKey;
+        String fingerprint = fingerprint(request);
+        long deadline = System.currentTimeMillis() + waitTimeoutMillis;
+
+        while (true) {
+            Boolean claimed = circuitBreaker.execute(
+                    () -> redisTemplate.opsForValue().setIfAbsent(key, fingerprint + SEPARATOR,
+                            Duration.ofSeconds(pendingTimeToLiveSeconds)),
+                    () -> null);
+            if (claimed == null) {
+                logger.warn("Redis is unavailable, running request without checking Idempotency-Key");
+                return action.apply(scopedKey);
+            }
+            if (claimed) {
+                return runClaimed(key, fingerprint, () -> action.apply(scopedKey));
+            }
+
+            String stored = circuitBreaker.execute(() -> redisTemplate.opsForValue().get(key), () -> null);
+            if (stored != null) {
+                int separator = stored.indexOf(SEPARATOR);
+                if (!stored.substring(0, separator).equals(fingerprint)) {
+                    throw new IllegalArgumentException("Idempotency-Key was already used for a different request");
+                }
+                if (separator < stored.length() - 1) {
+                    logger.debug("Replaying stored result for Idempotency-Key {}", idempotencyKey);
+                    return read(stored.substring(separator + 1), resultType);
+                }
+                // Claimed but not finished yet: wait for the first request
+                if (System.currentTimeMillis() >= deadline) {
+                    throw new RequestInProgressException(
+                            "A request with this Idempotency-Key is still being processed, retry later");
+                }
+                sleep();
+            }
+            // Otherwise the first request failed and released the key: claim it again
+        }
+    }
+
+    private <T> T runClaimed(String key, String fingerprint, Supplier<T> action) {
+        T result;
+        try {
+            result = action.get();
+        } catch (RuntimeException e) {
+            circuitBreaker.run(() -> redisTemplate.delete(key), () -> { });
+            throw e;
+        }
+
+        String stored = fingerprint + SEPARATOR + write(result);
+        circuitBreaker.run(
+                () -> redisTemplate.opsForValue().set(key, stored, Duration.ofHours(timeToLiveHours)),
+                () -> logger.warn("Could not store the result for Idempotency-Key {}", key));
+        return result;
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not fingerprint request", e);
+        }
+    }
+
+    private String write(Object result) {
+        try {
+            return objectMapper.writeValueAsString(result);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not store request result", e);
+        }
+    }
+
+    private <T> T read(String json, Class<T> resultType) {
+        try {
+            return objectMapper.readValue(json, resultType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not read stored request result", e);
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(POLL_INTERVAL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RequestInProgressException("Interrupted while waiting for a request with the same Idempotency-Key");
+        }
+    }
+}
@@ -1,17 +1,34 @@
 package com.ecommerce.service;
 
+import com.ecommerce.cache.CacheGenerations;
+import com.ecommerce.cache.TwoLevelCacheManager;
+import com.ecommerce.dto.OrderItemRequest;
 import com.ecommerce.entity.Product;
+import com.ecommerce.entity.StockHold;
+import com.ecommerce.event.ProductsChangedEvent;
 import com.ecommerce.exception.InsufficientStockException;
 import com.ecommerce.exception.ResourceNotFoundException;
+import com.ecommerce.metrics.OrderMetrics;
 import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.StockHoldRepository;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -22,67 +39,293 @@ public class InventoryService {
     private static final int LOW_STOCK_THRESHOLD = 10;
 
     private final ProductRepository productRepository;
+    private final TwoLevelCacheManager cacheManager;
+    private final CacheGenerations cacheGenerations;
+    private final OrderMetrics orderMetrics;
+    private final HotStockService hotStockService;
+    private final StockHoldRepository stockHoldRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${inventory.holds.ttl-minutes:15}")
+    private long holdTimeToLiveMinutes;
 
     @Transactional
-    @CacheEvict(value = "products", allEntries = true)
+    @CacheEvict(value = {"products", "productAvailability"}, key = "#productId")
     public void updateStock(Long productId, Integer newStockQuantity) {
         logger.info("Updating stock for product: {} to {}", productId, newStockQuantity);
 
+        // Deductions sold before this update must not be applied to the new figure
+        boolean hot = hotStockService.isHot(productId);
+        if (hot) {
+            hotStockService.flushBeforeStockChange();
+        }
+
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
 
+        if (newStockQuantity < product.getReservedQuantity()) {
+            logger.warn("Stock of product {} set to {}, below the {} units held for pending orders",
+                    productId, newStockQuantity, product.getReservedQuantity());
+        }
         product.setStockQuantity(newStockQuantity);
         product.setAvailable(newStockQuantity > 0);
 
         productRepository.save(product);
+        if (hot) {
+            hotStockService.reconcileAfterCommit(List.of(productId));
+        }
+        cacheGenerations.bump(ProductListingService.LISTINGS_GENERATION);
+        cacheGenerations.bump(ProductListingService.COUNTS_GENERATION);
+        eventPublisher.publishEvent(new ProductsChangedEvent(List.of(productId)));
         logger.info("Stock updated successfully for product: {}", productId);
     }
 
     @Transactional
     public void deductStock(Long productId, Integer quantity) {
-        logger.debug("Deducting {} units from product: {}", quantity, productId);
-
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
-
-        if (product.getStockQuantity() < quantity) {
+        if (!tryDeductStock(productId, quantity)) {
+            Product product = productRepository.findById(productId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
             throw new InsufficientStockException(
                     product.getName(),
                     quantity,
                     product.getStockQuantity());
         }
+    }
 
-        product.setStockQuantity(product.getStockQuantity() - quantity);
-        product.setAvailable(product.getStockQuantity() > 0);
+    /**
+     * Atomically deducts stock with a single conditional UPDATE, so concurrent
+     * buyers of the same product never conflict on the entity version.
+     *
+     * @return false if the product is missing or does not have enough stock
+     */
+    @Transactional
+    @CacheEvict(value = "products", key = "#productId")
+    public boolean tryDeductStock(Long productId, Integer quantity) {
+        logger.debug("Deducting {} units from product: {}", quantity, productId);
 
-        productRepository.save(product);
-        logger.debug("Stock deducted successfully for product: {}", productId);
+        boolean deducted = productRepository.decrementStock(productId, quantity) == 1;
+        if (deducted) {
+            eventPublisher.publishEvent(new ProductsChangedEvent(List.of(productId)));
+            logger.debug("Stock deducted successfully for product: {}", productId);
+        } else {
+            logger.warn("Insufficient stock to deduct {} units from product: {}", quantity, productId);
+        }
+        return deducted;
     }
 
     @Transactional
+    @CacheEvict(value = "products", key = "#productId")
     public void restoreStock(Long productId, Integer quantity) {
         logger.info("Restoring {} units to product: {}", quantity, productId);
 
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
+        if (productRepository.incrementStock(productId, quantity) == 0) {
+            throw new ResourceNotFoundException("Product", "id", productId);
+        }
+        eventPublisher.publishEvent(new ProductsChangedEvent(List.of(productId)));
+        logger.info("Stock restored successfully for product: {}", productId);
+    }
 
-        product.setStockQuantity(product.getStockQuantity() + quantity);
-        product.setAvailable(true);
+    /**
+     * Loads all products of an order with a single IN query.
+     *
+     * @return the loaded products keyed by id
+     */
+    public Map<Long, Product> loadOrderProducts(List<OrderItemRequest> items) {
+        Set<Long> productIds = items.stream()
+                .map(OrderItemRequest::getProductId)
+                .collect(Collectors.toSet());
 
-        productRepository.save(product);
-        logger.info("Stock restored successfully for product: {}", productId);
+        Map<Long, Product> products = productRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        for (Long productId : productIds) {
+            if (!products.containsKey(productId)) {
+                throw new ResourceNotFoundException("Product", "id", productId);
+            }
+        }
+        return products;
     }
 
-    public void validateStock(Long productId, Integer quantity) {
-        Product product = productRepository.findById(productId)
-                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
+    /**
+     * Checks every requested quantity against the unheld stock of the
+     * products returned by {@link #loadOrderProducts}. Quantities for
+     * repeated product ids are summed. This is only a fast pre-check;
+     * {@link #holdStock} is what actually secures the units.
+     */
+    public void validateStock(List<OrderItemRequest> items, Map<Long, Product> products) {
+        aggregateQuantities(items).forEach((productId, quantity) -> {
+            Product product = products.get(productId);
+            int available = product.getStockQuantity() - product.getReservedQuantity();
+            if (available < quantity) {
+                orderMetrics.recordInsufficientStock("validation");
+                throw new InsufficientStockException(
+                        product.getName(),
+                        quantity,
+                        available);
+            }
+        });
+    }
+
+    /**
+     * Deducts stock for a whole order in one JDBC batch of guarded updates.
+     * Either every line is deducted or, if any line falls short, the lines
+     * that did succeed are put back and false is returned.
+     */
+    @Transactional
+    public boolean tryDeductStock(Map<Long, Integer> quantities) {
+        logger.debug("Deducting stock for {} products", quantities.size());
+
+        Set<Long> failed = productRepository.batchDecrementStock(quantities);
+        if (failed.isEmpty()) {
+            stockChanged(quantities.keySet());
+            return true;
+        }
+
+        logger.warn("Insufficient stock for products {}, reverting deduction", failed);
+        orderMetrics.recordInsufficientStock("deduction");
+        Map<Long, Integer> deducted = new HashMap<>(quantities);
+        deducted.keySet().removeAll(failed);
+        productRepository.batchIncrementStock(deducted);
+        return false;
+    }
+
+    /**
+     * Holds stock for the lines of a pending order, so the slow payment step
+     * needs neither row locks nor an open transaction. Either every line is
+     * held or an exception is thrown and the caller's transaction rolls the
+     * other lines back. Holds lapse after {@code inventory.holds.ttl-minutes}.
+     */
+    @Transactional
+    public void holdStock(Long orderId, Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
 
-        if (product.getStockQuantity() < quantity) {
+        Set<Long> failed = productRepository.batchHoldStock(quantities);
+        if (!failed.isEmpty()) {
+            Long productId = failed.iterator().next();
+            Product product = productRepository.findById(productId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
+            orderMetrics.recordInsufficientStock("validation");
             throw new InsufficientStockException(
                     product.getName(),
-                    quantity,
-                    product.getStockQuantity());
+                    quantities.get(productId),
+                    product.getStockQuantity() - product.getReservedQuantity());
+        }
+
+        LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(holdTimeToLiveMinutes);
+        stockHoldRepository.batchInsertHolds(orderId, quantities, expiresAt);
+        logger.debug("Held stock of {} products for order {} until {}", quantities.size(), orderId, expiresAt);
+    }
+
+    /**
+     * Turns an order's holds into stock deductions. If the holds lapsed in
+     * the meantime, whatever is left of them is released and the stock is
+     * deducted directly, which can still fail.
+     *
+     * @return false if the order could not get its stock
+     */
+    @Transactional
+    public boolean commitHeldStock(Long orderId, Map<Long, Integer> quantities) {
+        Map<Long, Integer> held = heldQuantities(stockHoldRepository.lockByOrderId(orderId));
+        stockHoldRepository.deleteByOrderId(orderId);
+
+        if (!held.equals(quantities)) {
+            logger.warn("Stock holds of order {} expired, deducting stock directly", orderId);
+            productRepository.batchReleaseHeldStock(held);
+            return tryDeductStock(quantities);
+        }
+
+        Set<Long> failed = productRepository.batchCommitHeldStock(held);
+        if (failed.isEmpty()) {
+            stockChanged(held.keySet());
+            return true;
         }
+
+        // Stock was lowered below the held units; undo the lines that went through
+        logger.warn("Held stock of products {} is gone, cancelling order {}", failed, orderId);
+        orderMetrics.recordInsufficientStock("deduction");
+        Map<Long, Integer> committed = new HashMap<>(held);
+        committed.keySet().removeAll(failed);
+        productRepository.batchIncrementStock(committed);
+        Map<Long, Integer> uncommitted = new HashMap<>(held);
+        uncommitted.keySet().retainAll(failed);
+        productRepository.batchReleaseHeldStock(uncommitted);
+        return false;
+    }
+
+    @Transactional
+    public void releaseHeldStock(Long orderId) {
+        Map<Long, Integer> held = heldQuantities(stockHoldRepository.lockByOrderId(orderId));
+        if (!held.isEmpty()) {
+            productRepository.batchReleaseHeldStock(held);
+            stockHoldRepository.deleteByOrderId(orderId);
+        }
+    }
+
+    /**
+     * Releases whatever holds the given orders still have, with one batch
+     * update of the products and one delete.
+     */
+    @Transactional
+    public void releaseHeldStock(Collection<Long> orderIds) {
+        List<StockHold> holds = stockHoldRepository.lockByOrderIdIn(orderIds);
+        if (!holds.isEmpty()) {
+            Map<Long, Integer> held = heldQuantities(holds);
+            productRepository.batchReleaseHeldStock(held);
+            stockHoldRepository.deleteByIdIn(holds.stream().map(StockHold::getId).collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Releases up to {@code limit} expired holds with one batch update of the
+     * products and one delete. Holds locked by a concurrent sweep or commit
+     * are skipped.
+     *
+     * @return the holds that were released
+     */
+    @Transactional
+    public List<StockHold> releaseExpiredHolds(int limit) {
+        List<StockHold> expired = stockHoldRepository.lockExpired(LocalDateTime.now(), limit);
+        if (expired.isEmpty()) {
+            return expired;
+        }
+
+        Map<Long, Integer> held = heldQuantities(expired);
+        productRepository.batchReleaseHeldStock(held);
+        stockHoldRepository.deleteByIdIn(expired.stream().map(StockHold::getId).collect(Collectors.toList()));
+        return expired;
+    }
+
+    public Map<String, Object> getStockAvailability(Long productId) {
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
+
+        Map<String, Object> availability = new HashMap<>();
+        availability.put("productId", product.getId());
+        availability.put("stockQuantity", product.getStockQuantity());
+        availability.put("heldQuantity", product.getReservedQuantity());
+        availability.put("availableQuantity", product.getStockQuantity() - product.getReservedQuantity());
+        return availability;
+    }
+
+    private Map<Long, Integer> heldQuantities(List<StockHold> holds) {
+        return holds.stream()
+                .collect(Collectors.groupingBy(StockHold::getProductId,
+                        Collectors.summingInt(StockHold::getQuantity)));
+    }
+
+    private Map<Long, Integer> aggregateQuantities(List<OrderItemRequest> items) {
+        return items.stream()
+                .collect(Collectors.groupingBy(OrderItemRequest::getProductId,
+                        LinkedHashMap::new,
+                        Collectors.summingInt(OrderItemRequest::getQuantity)));
+    }
+
+    private void stockChanged(Collection<Long> productIds) {
+        cacheManager.evictAll("products", productIds);
+        // Running out of stock makes a product unavailable
+        eventPublisher.publishEvent(new ProductsChangedEvent(List.copyOf(productIds)));
     }
 
     public List<Product> getLowStockProducts() {
@@ -0,0 +1,74 @@
+package com.ecommerce.service;
+
+import com.ecommerce.event.OrderPlacedEvent;
+import com.ecommerce.metrics.OrderMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the payment stage of an order on the payment executor, after the
+ * transaction that saved the PENDING order has committed.
+ *
+ * <p>An order whose payment cannot be queued or breaks down is cancelled
+ * and its stock released, with a charge the gateway already took recorded
+ * as refunded. If even that fails, for example because the database is
+ * down, {@link StockHoldSweeper} cancels the order once it has been
+ * PENDING for {@code orders.pending-timeout-minutes}.
+ */
+@Component
+public class OrderPaymentProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderPaymentProcessor.class);
+
+    private final PaymentService paymentService;
+    private final OrderService orderService;
+    private final OrderMetrics orderMetrics;
+    private final Executor paymentExecutor;
+
+    public OrderPaymentProcessor(PaymentService paymentService, OrderService orderService,
+            OrderMetrics orderMetrics, @Qualifier("paymentExecutor") Executor paymentExecutor) {
+        this.paymentService = paymentService;
+        this.orderService = orderService;
+        this.orderMetrics = orderMetrics;
+        this.paymentExecutor = paymentExecutor;
+    }
+
+    @TransactionalEventListener
+    public void onOrderPlaced(OrderPlacedEvent event) {
+        try {
+            paymentExecutor.execute(() -> processPayment(event));
+        } catch (TaskRejectedException e) {
+            logger.error("Payment executor is saturated, cancelling order {}", event.getOrderId(), e);
+            abortOrder(event, false);
+        }
+    }
+
+    void processPayment(OrderPlacedEvent event) {
+        boolean charged = false;
+        try {
+            boolean paymentSuccess = orderMetrics.timeStage(OrderMetrics.STAGE_PAYMENT,
+                    () -> paymentService.authorizePayment(
+                            event.getOrderId(), event.getAmount(), event.getPaymentMethod()));
+            charged = paymentSuccess;
+            orderService.completeOrder(event.getOrderId(), event.getPaymentMethod(), paymentSuccess);
+        } catch (Exception e) {
+            logger.error("Payment processing failed for order {}", event.getOrderId(), e);
+            abortOrder(event, charged);
+        }
+    }
+
+    private void abortOrder(OrderPlacedEvent event, boolean charged) {
+        try {
+            orderService.abortOrder(event.getOrderId(), event.getPaymentMethod(), charged);
+        } catch (Exception e) {
+            logger.error("Could not cancel order {}, leaving it to the pending order sweep",
+                    event.getOrderId(), e);
+        }
+    }
+}
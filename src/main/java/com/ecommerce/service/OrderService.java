@@ -1,28 +1,52 @@
 package com.ecommerce.service;
 
+import com.ecommerce.dto.CartDTO;
+import com.ecommerce.dto.CartItemDTO;
+import com.ecommerce.dto.CursorPage;
+import com.ecommerce.dto.KeysetCursor;
 import com.ecommerce.dto.OrderDTO;
 import com.ecommerce.dto.OrderItemDTO;
 import com.ecommerce.dto.OrderItemRequest;
 import com.ecommerce.dto.OrderRequest;
 import com.ecommerce.entity.*;
-import com.ecommerce.exception.PaymentFailedException;
+import com.ecommerce.event.OrderPlacedEvent;
+import com.ecommerce.exception.InsufficientStockException;
+import com.ecommerce.exception.RequestInProgressException;
 import com.ecommerce.exception.ResourceNotFoundException;
+import com.ecommerce.metrics.OrderMetrics;
 import com.ecommerce.repository.OrderRepository;
-import com.ecommerce.repository.ProductRepository;
 import com.ecommerce.repository.UserRepository;
 import com.ecommerce.security.UserDetailsImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -32,34 +56,45 @@ public class OrderService {
     private static final Logger logger = LoggerFactory.getLogger(OrderService.class);
 
     private final OrderRepository orderRepository;
-    private final ProductRepository productRepository;
     private final UserRepository userRepository;
     private final InventoryService inventoryService;
     private final PaymentService paymentService;
-
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final OrderMetrics orderMetrics;
+    private final HotStockService hotStockService;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * @param idempotencyKey scoped key of the request placing the order, or
+     *                       {@code null}; an order already placed with the
+     *                       same key is returned instead of placing another
+     */
     @Transactional
-    public OrderDTO placeOrder(OrderRequest orderRequest) {
+    public OrderDTO placeOrder(OrderRequest orderRequest, String idempotencyKey) {
+        Optional<OrderDTO> placed = findByIdempotencyKey(idempotencyKey);
+        if (placed.isPresent()) {
+            logger.info("Order {} was already placed with this Idempotency-Key", placed.get().getId());
+            return placed.get();
+        }
         logger.info("Placing new order");
 
-        // Get current authenticated user
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
-
-        User user = userRepository.findById(userDetails.getId())
-                .orElseThrow(() -> new ResourceNotFoundException("User", "id", userDetails.getId()));
+        Order order = newOrder();
+        order.setIdempotencyKey(idempotencyKey);
 
-        // Create order
-        Order order = new Order();
-        order.setUser(user);
-        order.setStatus(Order.OrderStatus.PENDING);
+        // Load every product in one query and validate stock availability
+        Map<Long, Product> products = orderMetrics.timeStage(OrderMetrics.STAGE_PRODUCT_LOAD,
+                () -> inventoryService.loadOrderProducts(orderRequest.getItems()));
+        orderMetrics.timeStage(OrderMetrics.STAGE_STOCK_VALIDATION, () -> {
+            inventoryService.validateStock(orderRequest.getItems(), products);
+            return null;
+        });
 
         // Process order items
         for (OrderItemRequest itemRequest : orderRequest.getItems()) {
-            Product product = productRepository.findById(itemRequest.getProductId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Product", "id", itemRequest.getProductId()));
-
-            // Validate stock availability
-            inventoryService.validateStock(product.getId(), itemRequest.getQuantity());
+            Product product = products.get(itemRequest.getProductId());
 
             // Create order item
             OrderItem orderItem = new OrderItem();
@@ -70,37 +105,222 @@ public class OrderService {
             order.addOrderItem(orderItem);
         }
 
+        return submitOrder(order, orderRequest.getPaymentMethod(), productId -> products.get(productId).getName());
+    }
+
+    /**
+     * Places an order for a cart whose lines {@link CartService} already
+     * resolved against the products cache, with current prices. Products are
+     * only referenced, not loaded; {@link InventoryService#holdStock} is what
+     * checks their stock.
+     */
+    @Transactional
+    public OrderDTO placeOrder(CartDTO cart, String paymentMethod, String idempotencyKey) {
+        logger.info("Placing new order from a cart of {} lines", cart.getItems().size());
+
+        Order order = newOrder();
+        order.setIdempotencyKey(idempotencyKey);
+        Map<Long, String> productNames = new HashMap<>();
+        for (CartItemDTO line : cart.getItems()) {
+            OrderItem orderItem = new OrderItem();
+            orderItem.setProduct(entityManager.getReference(Product.class, line.getProductId()));
+            orderItem.setQuantity(line.getQuantity());
+            orderItem.setPrice(line.getPrice());
+            order.addOrderItem(orderItem);
+            productNames.put(line.getProductId(), line.getProductName());
+        }
+
+        return submitOrder(order, paymentMethod, productNames::get);
+    }
+
+    /**
+     * The order placed by the request with this scoped Idempotency-Key, if
+     * any. Unlike the result kept by {@link IdempotencyService}, the key on
+     * the order commits with the order itself.
+     */
+    public Optional<OrderDTO> findByIdempotencyKey(String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return Optional.empty();
+        }
+        return orderRepository.findWithDetailsByIdempotencyKey(idempotencyKey).map(this::mapToDTO);
+    }
+
+    private Order newOrder() {
+        // Get current authenticated user
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+
+        User user = orderMetrics.timeStage(OrderMetrics.STAGE_USER_LOOKUP, () ->
+                userRepository.findById(userDetails.getId())
+                        .orElseThrow(() -> new ResourceNotFoundException("User", "id", userDetails.getId())));
+
+        Order order = new Order();
+        order.setUser(user);
+        order.setStatus(Order.OrderStatus.PENDING);
+        return order;
+    }
+
+    /**
+     * Saves a new order as PENDING, secures its stock and hands it to the
+     * payment step.
+     */
+    private OrderDTO submitOrder(Order order, String paymentMethod, Function<Long, String> productNames) {
         // Calculate total
         order.calculateTotal();
 
-        // Save order first
-        Order savedOrder = orderRepository.save(order);
-
+        // Save as PENDING; payment runs asynchronously once this transaction commits
+        Order savedOrder;
         try {
-            // Process payment
-            Payment payment = paymentService.processPayment(savedOrder, orderRequest.getPaymentMethod());
-            savedOrder.setPayment(payment);
-
-            // Deduct stock only after successful payment
-            for (OrderItem item : savedOrder.getOrderItems()) {
-                inventoryService.deductStock(item.getProduct().getId(), item.getQuantity());
+            savedOrder = orderMetrics.timeStage(OrderMetrics.STAGE_SAVE, () -> orderRepository.save(order));
+        } catch (DataIntegrityViolationException e) {
+            if (order.getIdempotencyKey() == null) {
+                throw e;
             }
+            // Another request with the same key inserted its order first and has not committed yet
+            throw new RequestInProgressException(
+                    "An order with this Idempotency-Key is already being placed, retry later");
+        }
+
+        // Hot products are reserved in Redis
+        Map<Long, Integer> quantities = quantitiesOf(savedOrder);
+        HotStockService.Shortfall shortfall = hotStockService.reserve(savedOrder.getId(), quantities);
+        if (shortfall != null) {
+            orderMetrics.recordInsufficientStock("validation");
+            throw new InsufficientStockException(productNames.apply(shortfall.productId()),
+                    quantities.get(shortfall.productId()), shortfall.available());
+        }
 
-            // Update order status
-            savedOrder.setStatus(Order.OrderStatus.CONFIRMED);
-            orderRepository.save(savedOrder);
+        // Everything else is held in Postgres until payment completes or the hold expires
+        quantities.keySet().removeAll(hotStockService.getReservation(savedOrder.getId()).keySet());
+        inventoryService.holdStock(savedOrder.getId(), quantities);
 
-            logger.info("Order placed successfully with id: {}", savedOrder.getId());
-            return mapToDTO(savedOrder);
+        eventPublisher.publishEvent(new OrderPlacedEvent(
+                savedOrder.getId(), savedOrder.getTotalAmount(), paymentMethod));
 
-        } catch (PaymentFailedException e) {
+        logger.info("Order {} accepted, awaiting payment", savedOrder.getId());
+        return mapToDTO(savedOrder, productNames);
+    }
+
+    /**
+     * Second, short transaction of the order pipeline: records the payment
+     * outcome and either confirms the order (deducting stock) or cancels it.
+     */
+    @Transactional
+    public void completeOrder(Long orderId, String paymentMethod, boolean paymentSuccess) {
+        Order order = orderRepository.lockById(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order", "id", orderId));
+
+        if (order.getStatus() != Order.OrderStatus.PENDING) {
+            if (paymentSuccess && order.getPayment() == null) {
+                // Cancelled by the sweeper while the payment was in flight: the customer was charged
+                order.setPayment(refundPayment(order, paymentMethod));
+                logger.warn("Order {} was cancelled before its payment completed, payment refunded", orderId);
+                return;
+            }
+            logger.warn("Order {} is already {}, ignoring payment result", orderId, order.getStatus());
+            return;
+        }
+
+        Payment payment = paymentService.recordPayment(order, paymentMethod, paymentSuccess);
+        order.setPayment(payment);
+
+        if (!paymentSuccess) {
             // Payment failed, mark order as cancelled
-            savedOrder.setStatus(Order.OrderStatus.CANCELLED);
-            orderRepository.save(savedOrder);
+            hotStockService.release(orderId);
+            inventoryService.releaseHeldStock(orderId);
+            order.setStatus(Order.OrderStatus.CANCELLED);
+            orderRepository.save(order);
+            logger.error("Order {} cancelled due to payment failure", orderId);
+            return;
+        }
+
+        // Deduct stock only after successful payment, from the holds placed with
+        // the order. Lines reserved in Redis are confirmed there instead.
+        Map<Long, Integer> quantities = quantitiesOf(order);
+        quantities.keySet().removeAll(hotStockService.getReservation(orderId).keySet());
+        boolean deducted = quantities.isEmpty() || orderMetrics.timeStage(OrderMetrics.STAGE_STOCK_DEDUCTION,
+                () -> inventoryService.commitHeldStock(orderId, quantities));
+        if (!deducted) {
+            hotStockService.release(orderId);
+            payment.setStatus(Payment.PaymentStatus.REFUNDED);
+            order.setStatus(Order.OrderStatus.CANCELLED);
+            orderRepository.save(order);
+            logger.error("Order {} cancelled due to insufficient stock, payment refunded", orderId);
+            return;
+        }
+
+        hotStockService.confirm(orderId);
+        hotStockService.reconcileAfterCommit(quantities.keySet());
+
+        // Update order status
+        order.setStatus(Order.OrderStatus.CONFIRMED);
+        orderRepository.save(order);
+
+        logger.info("Order confirmed with id: {}", orderId);
+    }
+
+    /**
+     * Cancels an order whose payment step could not run or broke down and
+     * releases its stock. A charge the gateway did take is recorded as
+     * refunded, otherwise the payment is recorded as failed.
+     */
+    @Transactional
+    public void abortOrder(Long orderId, String paymentMethod, boolean charged) {
+        Order order = orderRepository.lockById(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order", "id", orderId));
+        if (order.getPayment() != null) {
+            logger.warn("Order {} already has a payment, not aborting it", orderId);
+            return;
+        }
+
+        order.setPayment(charged
+                ? refundPayment(order, paymentMethod)
+                : paymentService.recordPayment(order, paymentMethod, false));
+        if (order.getStatus() == Order.OrderStatus.PENDING) {
+            hotStockService.release(orderId);
+            inventoryService.releaseHeldStock(orderId);
+            order.setStatus(Order.OrderStatus.CANCELLED);
+        }
+        logger.error("Order {} aborted, payment {}", orderId, order.getPayment().getStatus());
+    }
 
-            logger.error("Order {} cancelled due to payment failure", savedOrder.getId());
-            throw e;
+    /**
+     * Cancels orders that are still waiting for payment after their stock
+     * holds expired or, for orders of hot products only, after they became
+     * too old. Their remaining holds and Redis reservations are released.
+     *
+     * @return the number of orders cancelled
+     */
+    @Transactional
+    public int cancelExpiredOrders(Collection<Long> orderIds) {
+        List<Order> expired = orderRepository.lockPendingByIdIn(orderIds);
+        if (expired.isEmpty()) {
+            return 0;
+        }
+        for (Order order : expired) {
+            order.setStatus(Order.OrderStatus.CANCELLED);
+            hotStockService.release(order.getId());
         }
+        inventoryService.releaseHeldStock(expired.stream().map(Order::getId).collect(Collectors.toList()));
+        return expired.size();
+    }
+
+    /**
+     * Ids of up to {@code limit} orders that have been PENDING since before
+     * {@code cutoff}, oldest first.
+     */
+    public List<Long> findStalePendingOrderIds(LocalDateTime cutoff, int limit) {
+        return orderRepository.findPendingIdsCreatedBefore(cutoff, PageRequest.of(0, limit));
+    }
+
+    /**
+     * Records a payment the gateway took for an order that can no longer be
+     * fulfilled as refunded.
+     */
+    private Payment refundPayment(Order order, String paymentMethod) {
+        Payment payment = paymentService.recordPayment(order, paymentMethod, true);
+        payment.setStatus(Payment.PaymentStatus.REFUNDED);
+        return payment;
     }
 
     public List<OrderDTO> getUserOrderHistory() {
@@ -113,10 +333,59 @@ public class OrderService {
                 .collect(Collectors.toList());
     }
 
+    public Page<OrderDTO> getUserOrderHistory(Pageable pageable) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+
+        Page<Long> ids = orderRepository.findIdsByUserId(userDetails.getId(), pageable);
+        List<OrderDTO> content = loadWithDetails(ids.getContent()).stream()
+                .map(this::mapToDTO)
+                .collect(Collectors.toList());
+        return new PageImpl<>(content, pageable, ids.getTotalElements());
+    }
+
+    /**
+     * Writes the user's complete order history to {@code out} as
+     * newline-delimited JSON, one order per line, newest first. Orders are
+     * read through a database cursor and detached once written, so memory
+     * use does not grow with the size of the history.
+     */
+    public void exportUserOrderHistory(Long userId, OutputStream out) throws IOException {
+        try (Stream<Order> orders = orderRepository.streamUserOrderHistory(userId);
+             SequenceWriter writer = objectMapper.writer()
+                     .withRootValueSeparator("\n")
+                     .writeValues(out)) {
+            Iterator<Order> iterator = orders.iterator();
+            while (iterator.hasNext()) {
+                Order order = iterator.next();
+                writer.write(mapToDTO(order));
+                entityManager.detach(order);
+            }
+        }
+    }
+
     public OrderDTO getOrderById(Long orderId) {
+        Order order = orderRepository.findWithDetailsById(orderId)
+                .orElseThrow(() -> new ResourceNotFoundException("Order", "id", orderId));
+
+        checkOrderAccess(order);
+        return mapToDTO(order);
+    }
+
+    public Map<String, Object> getOrderStatus(Long orderId) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Order", "id", orderId));
 
+        checkOrderAccess(order);
+
+        Map<String, Object> status = new HashMap<>();
+        status.put("orderId", order.getId());
+        status.put("status", order.getStatus().name());
+        status.put("paymentStatus", order.getPayment() != null ? order.getPayment().getStatus().name() : null);
+        return status;
+    }
+
+    private void checkOrderAccess(Order order) {
         // Check if user has permission to view this order
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
@@ -127,16 +396,90 @@ public class OrderService {
         if (!isAdmin && !order.getUser().getId().equals(userDetails.getId())) {
             throw new RuntimeException("You don't have permission to view this order");
         }
-
-        return mapToDTO(order);
     }
 
     public Page<OrderDTO> getAllOrders(Pageable pageable) {
-        return orderRepository.findAll(pageable)
-                .map(this::mapToDTO);
+        Page<Long> ids = orderRepository.findPageIds(pageable);
+        List<OrderDTO> content = loadWithDetails(ids.getContent()).stream()
+                .map(this::mapToDTO)
+                .collect(Collectors.toList());
+        return new PageImpl<>(content, pageable, ids.getTotalElements());
+    }
+
+    /**
+     * Keyset page of all orders by creation time, for the admin view. Unlike
+     * {@link #getAllOrders} it runs no count query and no OFFSET scan.
+     */
+    public CursorPage<OrderDTO> getAllOrdersByCursor(String sortDir, String cursor, int size) {
+        boolean ascending = sortDir.equalsIgnoreCase("ASC");
+        String direction = ascending ? "ASC" : "DESC";
+        Pageable limit = PageRequest.of(0, size + 1);
+
+        List<Long> ids;
+        if (cursor == null) {
+            ids = ascending
+                    ? orderRepository.findFirstIdsByCreatedAtAsc(limit)
+                    : orderRepository.findFirstIdsByCreatedAtDesc(limit);
+        } else {
+            KeysetCursor position = KeysetCursor.decode(cursor);
+            if (!position.getSortBy().equals("createdAt") || !position.getDirection().equals(direction)) {
+                throw new IllegalArgumentException("Cursor does not match the requested sort order");
+            }
+            LocalDateTime createdAt = LocalDateTime.parse(position.getValue());
+            ids = ascending
+                    ? orderRepository.findNextIdsByCreatedAtAsc(createdAt, position.getId(), limit)
+                    : orderRepository.findNextIdsByCreatedAtDesc(createdAt, position.getId(), limit);
+        }
+
+        boolean hasNext = ids.size() > size;
+        if (hasNext) {
+            ids = ids.subList(0, size);
+        }
+        List<Order> orders = loadWithDetails(ids);
+
+        String nextCursor = null;
+        if (hasNext) {
+            Order last = orders.get(orders.size() - 1);
+            nextCursor = new KeysetCursor("createdAt", direction, last.getId(),
+                    last.getCreatedAt().toString()).encode();
+        }
+
+        List<OrderDTO> content = orders.stream()
+                .map(this::mapToDTO)
+                .collect(Collectors.toList());
+        return new CursorPage<>(content, content.size(), nextCursor);
+    }
+
+    private Map<Long, Integer> quantitiesOf(Order order) {
+        return order.getOrderItems().stream()
+                .collect(Collectors.groupingBy(item -> item.getProduct().getId(),
+                        Collectors.summingInt(OrderItem::getQuantity)));
+    }
+
+    /**
+     * Loads orders with user, items, products and payment in one query and
+     * returns them in the order of the given ids.
+     */
+    private List<Order> loadWithDetails(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Order> ordersById = orderRepository.findWithDetailsByIdIn(ids).stream()
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
+        return ids.stream()
+                .map(ordersById::get)
+                .collect(Collectors.toList());
+    }
+
+    OrderDTO mapToDTO(Order order) {
+        return mapToDTO(order, null);
     }
 
-    private OrderDTO mapToDTO(Order order) {
+    /**
+     * @param productNames names by product id, or {@code null} to read them
+     *                     from the items' products
+     */
+    private OrderDTO mapToDTO(Order order, Function<Long, String> productNames) {
         OrderDTO dto = new OrderDTO();
         dto.setId(order.getId());
         dto.setUserId(order.getUser().getId());
@@ -146,7 +489,7 @@ public class OrderService {
         dto.setCreatedAt(order.getCreatedAt());
 
         List<OrderItemDTO> itemDTOs = order.getOrderItems().stream()
-                .map(this::mapItemToDTO)
+                .map(item -> mapItemToDTO(item, productNames))
                 .collect(Collectors.toList());
         dto.setItems(itemDTOs);
 
@@ -158,11 +501,13 @@ public class OrderService {
         return dto;
     }
 
-    private OrderItemDTO mapItemToDTO(OrderItem item) {
+    private OrderItemDTO mapItemToDTO(OrderItem item, Function<Long, String> productNames) {
         OrderItemDTO dto = new OrderItemDTO();
         dto.setId(item.getId());
         dto.setProductId(item.getProduct().getId());
-        dto.setProductName(item.getProduct().getName());
+        dto.setProductName(productNames != null
+                ? productNames.apply(item.getProduct().getId())
+                : item.getProduct().getName());
         dto.setQuantity(item.getQuantity());
         dto.setPrice(item.getPrice());
         dto.setSubtotal(item.getSubtotal());
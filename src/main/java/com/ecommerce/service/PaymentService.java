@@ -2,7 +2,7 @@ package com.ecommerce.service;
 
 import com.ecommerce.entity.Payment;
 import com.ecommerce.entity.Order;
-import com.ecommerce.exception.PaymentFailedException;
+import com.ecommerce.metrics.OrderMetrics;
 import com.ecommerce.repository.PaymentRepository;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
@@ -10,6 +10,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
 import java.util.Random;
 import java.util.UUID;
 
@@ -21,36 +22,37 @@ public class PaymentService {
     private static final Random random = new Random();
 
     private final PaymentRepository paymentRepository;
+    private final OrderMetrics orderMetrics;
 
-    @Transactional
-    public Payment processPayment(Order order, String paymentMethod) {
-        logger.info("Processing payment for order: {}", order.getId());
-
-        Payment payment = new Payment();
-        payment.setOrder(order);
-        payment.setAmount(order.getTotalAmount());
-        payment.setPaymentMethod(paymentMethod);
-        payment.setTransactionId(generateTransactionId());
-        payment.setStatus(Payment.PaymentStatus.PENDING);
+    /**
+     * Calls the payment gateway. Deliberately not transactional: this is the
+     * slow step and must not hold a database connection while it runs.
+     */
+    public boolean authorizePayment(Long orderId, BigDecimal amount, String paymentMethod) {
+        logger.info("Processing payment of {} via {} for order: {}", amount, paymentMethod, orderId);
 
         // Simulate payment processing with 70% success rate
         boolean paymentSuccess = simulatePaymentProcessing();
+        orderMetrics.recordPayment(paymentSuccess);
 
         if (paymentSuccess) {
-            payment.setStatus(Payment.PaymentStatus.SUCCESS);
-            logger.info("Payment successful for order: {}", order.getId());
+            logger.info("Payment successful for order: {}", orderId);
         } else {
-            payment.setStatus(Payment.PaymentStatus.FAILED);
-            logger.error("Payment failed for order: {}", order.getId());
+            logger.error("Payment failed for order: {}", orderId);
         }
+        return paymentSuccess;
+    }
 
-        Payment savedPayment = paymentRepository.save(payment);
-
-        if (!paymentSuccess) {
-            throw new PaymentFailedException("Payment processing failed. Please try again.");
-        }
+    @Transactional
+    public Payment recordPayment(Order order, String paymentMethod, boolean paymentSuccess) {
+        Payment payment = new Payment();
+        payment.setOrder(order);
+        payment.setAmount(order.getTotalAmount());
+        payment.setPaymentMethod(paymentMethod);
+        payment.setTransactionId(generateTransactionId());
+        payment.setStatus(paymentSuccess ? Payment.PaymentStatus.SUCCESS : Payment.PaymentStatus.FAILED);
 
-        return savedPayment;
+        return paymentRepository.save(payment);
     }
 
     private boolean simulatePaymentProcessing() {
@@ -0,0 +1,249 @@
+package com.ecommerce.service;
+
+import com.ecommerce.cache.CacheGenerations;
+import com.ecommerce.dto.ProductImportRow;
+import com.ecommerce.entity.Category;
+import com.ecommerce.entity.Product;
+import com.ecommerce.event.ProductsChangedEvent;
+import com.ecommerce.repository.CategoryRepository;
+import com.ecommerce.repository.ProductRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk product import from a CSV (with header row) or NDJSON stream.
+ *
+ * <p>Rows are read one at a time and inserted in JDBC batches of
+ * {@code catalogue.import.batch-size}, each batch in its own transaction
+ * with ids taken from the {@code products} sequence in one round trip.
+ * Only the current batch is held in memory. Categories are resolved from a
+ * map loaded once per import.
+ *
+ * <p>Progress is written to the output as NDJSON while the import runs: an
+ * {@code error} line per rejected row, a {@code progress} line per batch and
+ * a final {@code summary}. Batches that committed stay imported if a later
+ * one fails.
+ */
+@Service
+public class ProductImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductImportService.class);
+    private static final CsvMapper CSV_MAPPER = CsvMapper.builder()
+            .enable(CsvParser.Feature.SKIP_EMPTY_LINES)
+            .build();
+
+    public enum Format { CSV, NDJSON }
+
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final CacheGenerations cacheGenerations;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final TransactionTemplate batchTransaction;
+
+    @Value("${catalogue.import.batch-size:1000}")
+    private int batchSize;
+
+    public ProductImportService(ProductRepository productRepository, CategoryRepository categoryRepository,
+            CacheGenerations cacheGenerations, ApplicationEventPublisher eventPublisher, ObjectMapper objectMapper,
+            Validator validator, PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+        this.cacheGenerations = cacheGenerations;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    public void importProducts(InputStream in, Format format, OutputStream out) throws IOException {
+        long started = System.currentTimeMillis();
+        Categories categories = new Categories(categoryRepository.findAll());
+        Progress progress = new Progress();
+
+        try (SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n").writeValues(out)) {
+            List<Product> batch = new ArrayList<>(batchSize);
+            long batchFirstRow = 1;
+            try (MappingIterator<JsonNode> rows = reader(format).readValues(in)) {
+                while (rows.hasNextValue()) {
+                    JsonNode node = rows.nextValue();
+                    progress.rows++;
+                    try {
+                        batch.add(toProduct(node, categories));
+                    } catch (IllegalArgumentException e) {
+                        progress.failed++;
+                        writer.write(error(progress.rows, e.getMessage()));
+                    }
+
+                    if (batch.size() == batchSize) {
+                        insert(batch, batchFirstRow, progress, writer);
+                        batchFirstRow = progress.rows + 1;
+                    }
+                }
+            } catch (JsonProcessingException e) {
+                // The stream cannot be resynchronised after a syntax error
+                writer.write(error(progress.rows + 1, "Unreadable input, import stopped: " + e.getOriginalMessage()));
+            }
+            insert(batch, batchFirstRow, progress, writer);
+
+            if (progress.imported > 0) {
+                cacheGenerations.bump(ProductListingService.LISTINGS_GENERATION);
+                cacheGenerations.bump(ProductListingService.COUNTS_GENERATION);
+            }
+
+            Map<String, Object> summary = progress.toMap("summary");
+            summary.put("elapsedMs", System.currentTimeMillis() - started);
+            writer.write(summary);
+        }
+        logger.info("Imported {} of {} products, {} failed", progress.imported, progress.rows, progress.failed);
+    }
+
+    private void insert(List<Product> batch, long firstRow, Progress progress, SequenceWriter writer)
+            throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            batchTransaction.executeWithoutResult(status -> {
+                List<Long> ids = productRepository.allocateProductIds(batch.size());
+                for (int i = 0; i < batch.size(); i++) {
+                    batch.get(i).setId(ids.get(i));
+                }
+                productRepository.batchInsertProducts(batch);
+                eventPublisher.publishEvent(new ProductsChangedEvent(ids));
+            });
+            progress.imported += batch.size();
+        } catch (DataAccessException e) {
+            logger.warn("Product import batch starting at row {} failed", firstRow, e);
+            progress.failed += batch.size();
+            writer.write(error(firstRow, "Batch of " + batch.size() + " products starting here was rejected: "
+                    + e.getMostSpecificCause().getMessage()));
+        }
+        batch.clear();
+        writer.write(progress.toMap("progress"));
+    }
+
+    private Product toProduct(JsonNode node, Categories categories) {
+        ProductImportRow row;
+        try {
+            row = objectMapper.convertValue(node, ProductImportRow.class);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(e.getCause() instanceof JsonMappingException mapping
+                    ? mapping.getOriginalMessage()
+                    : e.getMessage());
+        }
+
+        Set<ConstraintViolation<ProductImportRow>> violations = validator.validate(row);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Product product = new Product();
+        product.setName(row.getName());
+        product.setDescription(row.getDescription());
+        product.setPrice(row.getPrice());
+        product.setStockQuantity(row.getStockQuantity());
+        product.setCategory(categories.resolve(row));
+        product.setImageUrl(row.getImageUrl());
+        product.setAvailable(row.getStockQuantity() > 0);
+        product.setCreatedAt(now);
+        product.setUpdatedAt(now);
+        return product;
+    }
+
+    private ObjectReader reader(Format format) {
+        if (format == Format.CSV) {
+            return CSV_MAPPER.readerFor(JsonNode.class).with(CsvSchema.emptySchema().withHeader());
+        }
+        return objectMapper.readerFor(JsonNode.class);
+    }
+
+    private static Map<String, Object> error(long row, String message) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("type", "error");
+        error.put("row", row);
+        error.put("message", message);
+        return error;
+    }
+
+    private static final class Progress {
+
+        long rows;
+        long imported;
+        long failed;
+
+        Map<String, Object> toMap(String type) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("type", type);
+            map.put("rows", rows);
+            map.put("imported", imported);
+            map.put("failed", failed);
+            return map;
+        }
+    }
+
+    private static final class Categories {
+
+        private final Map<Long, Category> byId;
+        private final Map<String, Category> byName;
+
+        Categories(List<Category> categories) {
+            byId = categories.stream().collect(Collectors.toMap(Category::getId, Function.identity()));
+            byName = categories.stream().collect(Collectors.toMap(
+                    category -> category.getName().toLowerCase(), Function.identity(), (first, second) -> first));
+        }
+
+        Category resolve(ProductImportRow row) {
+            if (row.getCategoryId() != null) {
+                Category category = byId.get(row.getCategoryId());
+                if (category == null) {
+                    throw new IllegalArgumentException("Unknown category id " + row.getCategoryId());
+                }
+                return category;
+            }
+            if (row.getCategoryName() != null && !row.getCategoryName().isBlank()) {
+                Category category = byName.get(row.getCategoryName().trim().toLowerCase());
+                if (category == null) {
+                    throw new IllegalArgumentException("Unknown category '" + row.getCategoryName() + "'");
+                }
+                return category;
+            }
+            throw new IllegalArgumentException("Category id or name is required");
+        }
+    }
+}
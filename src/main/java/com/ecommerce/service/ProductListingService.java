@@ -0,0 +1,70 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.ProductDTO;
+import com.ecommerce.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Cached building blocks of the storefront product listing. Page content and
+ * the total count live in separate caches: counts change far less often than
+ * the content of a page, so they are kept longer (see RedisConfig).
+ *
+ * <p>Both caches use {@code sync = true}, so on a miss only one request per
+ * key and node queries the database while the others wait for its result.
+ * Keys carry a generation that admin product and stock writes bump
+ * ({@link #LISTINGS_GENERATION}, {@link #COUNTS_GENERATION}). Stock deducted
+ * by orders does not bump it; listings pick that up within their short TTL.
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class ProductListingService {
+
+    public static final String LISTINGS_GENERATION = "product-listings";
+    public static final String COUNTS_GENERATION = "product-counts";
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductListingService.class);
+
+    private final ProductRepository productRepository;
+    private final ProductMapper productMapper;
+
+    @Cacheable(value = "productListings", sync = true,
+            key = "'v' + @cacheGenerations.current('product-listings')"
+                    + " + ':' + #categoryId"
+                    + " + ':' + #minPrice?.stripTrailingZeros()?.toPlainString()"
+                    + " + ':' + #maxPrice?.stripTrailingZeros()?.toPlainString()"
+                    + " + ':' + #pageable.pageNumber + ':' + #pageable.pageSize + ':' + #pageable.sort")
+    public List<ProductDTO> getListingPage(Long categoryId, BigDecimal minPrice, BigDecimal maxPrice,
+            Pageable pageable) {
+        logger.debug("Loading product listing page {} - category: {}, minPrice: {}, maxPrice: {}",
+                pageable.getPageNumber(), categoryId, minPrice, maxPrice);
+        return productRepository.findListingByFilters(categoryId, minPrice, maxPrice, pageable).stream()
+                .map(productMapper::toDTO)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns {@link Number} rather than {@code Long}: after a JSON round trip
+     * through Redis small counts come back as {@code Integer}.
+     */
+    @Cacheable(value = "productCounts", sync = true,
+            key = "'v' + @cacheGenerations.current('product-counts')"
+                    + " + ':' + #categoryId"
+                    + " + ':' + #minPrice?.stripTrailingZeros()?.toPlainString()"
+                    + " + ':' + #maxPrice?.stripTrailingZeros()?.toPlainString()")
+    public Number countListing(Long categoryId, BigDecimal minPrice, BigDecimal maxPrice) {
+        logger.debug("Counting products - category: {}, minPrice: {}, maxPrice: {}",
+                categoryId, minPrice, maxPrice);
+        return productRepository.countByFilters(categoryId, minPrice, maxPrice);
+    }
+}
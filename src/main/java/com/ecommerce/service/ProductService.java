@@ -1,8 +1,15 @@
 package com.ecommerce.service;
 
+import com.ecommerce.cache.CacheGenerations;
+import com.ecommerce.cache.TwoLevelCache;
+import com.ecommerce.cache.TwoLevelCacheManager;
+import com.ecommerce.dto.CursorPage;
+import com.ecommerce.dto.KeysetCursor;
 import com.ecommerce.dto.ProductDTO;
+import com.ecommerce.dto.ProductFacets;
 import com.ecommerce.entity.Category;
 import com.ecommerce.entity.Product;
+import com.ecommerce.event.ProductsChangedEvent;
 import com.ecommerce.exception.ResourceNotFoundException;
 import com.ecommerce.repository.CategoryRepository;
 import com.ecommerce.repository.ProductRepository;
@@ -10,13 +17,26 @@ import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -24,34 +44,201 @@ import java.math.BigDecimal;
 public class ProductService {
 
     private static final Logger logger = LoggerFactory.getLogger(ProductService.class);
+    private static final Set<String> CURSOR_SORT_KEYS = Set.of("id", "price", "name", "createdAt");
 
     private final ProductRepository productRepository;
     private final CategoryRepository categoryRepository;
+    private final ProductListingService productListingService;
+    private final ProductMapper productMapper;
+    private final CacheGenerations cacheGenerations;
+    private final CatalogueIndex catalogueIndex;
+    private final TwoLevelCacheManager cacheManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final HotStockService hotStockService;
 
-    @Cacheable(value = "products", key = "#id")
+    /**
+     * Reads through the products cache as {@link #getProductsByIds} does.
+     */
     public ProductDTO getProductById(Long id) {
         logger.debug("Fetching product with id: {}", id);
-        Product product = productRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", id));
-        return mapToDTO(product);
+        List<ProductDTO> found = getProductsByIds(List.of(id));
+        if (found.isEmpty()) {
+            throw new ResourceNotFoundException("Product", "id", id);
+        }
+        return found.get(0);
     }
 
     public Page<ProductDTO> getAllProducts(Pageable pageable) {
         logger.debug("Fetching all products with pagination");
-        return productRepository.findByAvailableTrue(pageable)
-                .map(this::mapToDTO);
+        return getProductsByFilters(null, null, null, pageable);
     }
 
     public Page<ProductDTO> getProductsByFilters(Long categoryId, BigDecimal minPrice,
             BigDecimal maxPrice, Pageable pageable) {
         logger.debug("Fetching products with filters - category: {}, minPrice: {}, maxPrice: {}",
                 categoryId, minPrice, maxPrice);
-        return productRepository.findByFilters(categoryId, minPrice, maxPrice, pageable)
-                .map(this::mapToDTO);
+        if (catalogueIndex.canServe(pageable)) {
+            CatalogueIndex.Hits hits = catalogueIndex.find(categoryId, minPrice, maxPrice, pageable);
+            return new PageImpl<>(getProductsByIds(hits.ids()), pageable, hits.total());
+        }
+        List<ProductDTO> content = productListingService.getListingPage(categoryId, minPrice, maxPrice, pageable);
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> productListingService.countListing(categoryId, minPrice, maxPrice).longValue());
+    }
+
+    /**
+     * Product counts per category and price bucket for the listing filters;
+     * needs the catalogue index.
+     */
+    public ProductFacets getProductFacets(Long categoryId, BigDecimal minPrice, BigDecimal maxPrice) {
+        return catalogueIndex.facets(categoryId, minPrice, maxPrice);
+    }
+
+    /**
+     * DTOs for {@code ids} in the same order. The products cache is read with
+     * one Redis MGET, the misses are loaded with one IN query and written
+     * back in one pipeline. Ids of products that do not exist are skipped.
+     *
+     * <p>{@code availableQuantity} moves with every stock hold, so it is not
+     * cached with the product but read from the productAvailability cache
+     * the same way. That cache is not evicted by holds; like a listing page,
+     * it lags them by at most its one minute TTL.
+     */
+    public List<ProductDTO> getProductsByIds(List<Long> ids) {
+        Map<Long, ProductDTO> found = getAll("products", ids, ProductDTO.class, this::loadProducts);
+        if (found.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Integer> available = getAll("productAvailability", found.keySet(), Integer.class,
+                this::loadAvailableQuantities);
+        return ids.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .map(product -> product.withAvailableQuantity(available.get(product.getId())))
+                .collect(Collectors.toList());
+    }
+
+    private <V> Map<Long, V> getAll(String cacheName, Collection<Long> ids, Class<V> type,
+            Function<List<Long>, Map<Long, V>> loader) {
+        TwoLevelCache cache = cacheManager.getTwoLevelCache(cacheName);
+        return cache != null ? cache.getAll(ids, type, loader) : loader.apply(List.copyOf(ids));
+    }
+
+    private Map<Long, ProductDTO> loadProducts(List<Long> ids) {
+        logger.debug("Loading {} products missing from the cache", ids.size());
+        return productRepository.findWithCategoryByIdIn(ids).stream()
+                .collect(Collectors.toMap(Product::getId,
+                        product -> productMapper.toDTO(product).withAvailableQuantity(null)));
+    }
+
+    private Map<Long, Integer> loadAvailableQuantities(List<Long> ids) {
+        return productRepository.findAvailableQuantitiesByIdIn(ids).stream()
+                .collect(Collectors.toMap(row -> (Long) row[0], row -> ((Number) row[1]).intValue()));
+    }
+
+    /**
+     * Full-text search over name, category name and description, ranked by
+     * relevance. Every word of {@code query} must match, the last one as a
+     * prefix so results show up while the user is still typing.
+     */
+    public Page<ProductDTO> searchProducts(String query, Long categoryId, BigDecimal minPrice,
+            BigDecimal maxPrice, Pageable pageable) {
+        String tsQuery = toPrefixTsQuery(query);
+        logger.debug("Searching products for '{}'", tsQuery);
+
+        List<Long> ids = productRepository.searchIds(tsQuery, categoryId, minPrice, maxPrice,
+                pageable.getPageSize(), pageable.getOffset());
+        Map<Long, Product> productsById = productRepository.findWithCategoryByIdIn(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        List<ProductDTO> content = ids.stream()
+                .map(productsById::get)
+                .filter(Objects::nonNull)
+                .map(productMapper::toDTO)
+                .collect(Collectors.toList());
+
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> productRepository.countSearch(tsQuery, categoryId, minPrice, maxPrice));
+    }
+
+    /**
+     * Turns free text into a tsquery such as {@code wireless & headph:*}.
+     * Only letters and digits are kept, so user input can never inject
+     * tsquery operators. Only the last term, the one still being typed, is
+     * a prefix.
+     */
+    static String toPrefixTsQuery(String query) {
+        List<String> terms = Arrays.stream(query.split("[^\\p{L}\\p{N}]+"))
+                .filter(term -> !term.isEmpty())
+                .map(String::toLowerCase)
+                .collect(Collectors.toList());
+        if (terms.isEmpty()) {
+            throw new IllegalArgumentException("Search query must contain letters or digits");
+        }
+        return String.join(" & ", terms) + ":*";
+    }
+
+    /**
+     * Keyset ("seek") variant of {@link #getProductsByFilters}: the cost of a
+     * page does not grow with its depth and no count query is run.
+     */
+    public CursorPage<ProductDTO> getProductsByCursor(Long categoryId, BigDecimal minPrice,
+            BigDecimal maxPrice, String sortBy, String sortDir, String cursor, int size) {
+        if (!CURSOR_SORT_KEYS.contains(sortBy)) {
+            throw new IllegalArgumentException("Cursor pagination supports sorting by " + CURSOR_SORT_KEYS);
+        }
+        boolean ascending = !sortDir.equalsIgnoreCase("DESC");
+        String direction = ascending ? "ASC" : "DESC";
+
+        Comparable<?> lastValue = null;
+        Long lastId = null;
+        if (cursor != null) {
+            KeysetCursor position = KeysetCursor.decode(cursor);
+            if (!position.getSortBy().equals(sortBy) || !position.getDirection().equals(direction)) {
+                throw new IllegalArgumentException("Cursor does not match the requested sort order");
+            }
+            lastValue = parseSortValue(sortBy, position.getValue());
+            lastId = position.getId();
+        }
+
+        // Fetch one extra row to find out whether there is a next page
+        List<Product> products = productRepository.findNextByFilters(
+                categoryId, minPrice, maxPrice, sortBy, ascending, lastValue, lastId, size + 1);
+        boolean hasNext = products.size() > size;
+        if (hasNext) {
+            products = products.subList(0, size);
+        }
+
+        String nextCursor = null;
+        if (hasNext) {
+            Product last = products.get(products.size() - 1);
+            nextCursor = new KeysetCursor(sortBy, direction, last.getId(), sortValue(sortBy, last)).encode();
+        }
+
+        List<ProductDTO> content = products.stream()
+                .map(productMapper::toDTO)
+                .collect(Collectors.toList());
+        return new CursorPage<>(content, content.size(), nextCursor);
+    }
+
+    private Comparable<?> parseSortValue(String sortBy, String value) {
+        return switch (sortBy) {
+            case "price" -> new BigDecimal(value);
+            case "name" -> value;
+            case "createdAt" -> LocalDateTime.parse(value);
+            default -> null;
+        };
+    }
+
+    private String sortValue(String sortBy, Product product) {
+        return switch (sortBy) {
+            case "price" -> product.getPrice().toPlainString();
+            case "name" -> product.getName();
+            case "createdAt" -> product.getCreatedAt().toString();
+            default -> null;
+        };
     }
 
     @Transactional
-    @CacheEvict(value = "products", allEntries = true)
     public ProductDTO createProduct(ProductDTO productDTO) {
         logger.info("Creating new product: {}", productDTO.getName());
 
@@ -68,16 +255,24 @@ public class ProductService {
         product.setAvailable(true);
 
         Product savedProduct = productRepository.save(product);
+        invalidateListings(savedProduct.getId());
         logger.info("Product created successfully with id: {}", savedProduct.getId());
 
-        return mapToDTO(savedProduct);
+        return productMapper.toDTO(savedProduct);
     }
 
     @Transactional
-    @CacheEvict(value = "products", allEntries = true)
+    @Caching(put = @CachePut(value = "products", key = "#id"),
+            evict = @CacheEvict(value = "productAvailability", key = "#id"))
     public ProductDTO updateProduct(Long id, ProductDTO productDTO) {
         logger.info("Updating product with id: {}", id);
 
+        // As in InventoryService.updateStock: deductions sold before this update must not hit the new figure
+        boolean hotStockChange = productDTO.getStockQuantity() != null && hotStockService.isHot(id);
+        if (hotStockChange) {
+            hotStockService.flushBeforeStockChange();
+        }
+
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Product", "id", id));
 
@@ -106,14 +301,19 @@ public class ProductService {
             product.setAvailable(productDTO.getAvailable());
         }
 
-        Product updatedProduct = productRepository.save(product);
+        // Flush so the cached DTO carries the new version and updatedAt
+        Product updatedProduct = productRepository.saveAndFlush(product);
+        if (hotStockChange) {
+            hotStockService.reconcileAfterCommit(List.of(id));
+        }
+        invalidateListings(id);
         logger.info("Product updated successfully with id: {}", updatedProduct.getId());
 
-        return mapToDTO(updatedProduct);
+        return productMapper.toDTO(updatedProduct);
     }
 
     @Transactional
-    @CacheEvict(value = "products", allEntries = true)
+    @CacheEvict(value = "products", key = "#id")
     public void deleteProduct(Long id) {
         logger.info("Deleting product with id: {}", id);
 
@@ -121,22 +321,13 @@ public class ProductService {
                 .orElseThrow(() -> new ResourceNotFoundException("Product", "id", id));
 
         productRepository.delete(product);
+        invalidateListings(id);
         logger.info("Product deleted successfully with id: {}", id);
     }
 
-    private ProductDTO mapToDTO(Product product) {
-        ProductDTO dto = new ProductDTO();
-        dto.setId(product.getId());
-        dto.setName(product.getName());
-        dto.setDescription(product.getDescription());
-        dto.setPrice(product.getPrice());
-        dto.setStockQuantity(product.getStockQuantity());
-        dto.setCategoryId(product.getCategory().getId());
-        dto.setCategoryName(product.getCategory().getName());
-        dto.setImageUrl(product.getImageUrl());
-        dto.setAvailable(product.getAvailable());
-        dto.setCreatedAt(product.getCreatedAt());
-        dto.setUpdatedAt(product.getUpdatedAt());
-        return dto;
+    private void invalidateListings(Long productId) {
+        cacheGenerations.bump(ProductListingService.LISTINGS_GENERATION);
+        cacheGenerations.bump(ProductListingService.COUNTS_GENERATION);
+        eventPublisher.publishEvent(new ProductsChangedEvent(List.of(productId)));
     }
 }
@@ -0,0 +1,68 @@
+package com.ecommerce.service;
+
+import com.ecommerce.entity.StockHold;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Periodically releases expired stock holds, one batch per transaction, and
+ * cancels the orders that were still waiting on them.
+ *
+ * <p>Orders whose lines are all hot products have no holds, and an order
+ * whose payment step died never completes, so orders still PENDING after
+ * {@code orders.pending-timeout-minutes} are cancelled as well.
+ */
+@Component
+@RequiredArgsConstructor
+public class StockHoldSweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockHoldSweeper.class);
+
+    private final InventoryService inventoryService;
+    private final OrderService orderService;
+
+    @Value("${inventory.holds.sweep-batch-size:500}")
+    private int batchSize;
+
+    @Value("${orders.pending-timeout-minutes:20}")
+    private long pendingTimeoutMinutes;
+
+    @Scheduled(fixedDelayString = "${inventory.holds.sweep-interval-ms:30000}")
+    public void releaseExpiredHolds() {
+        List<StockHold> released;
+        do {
+            released = inventoryService.releaseExpiredHolds(batchSize);
+            if (!released.isEmpty()) {
+                Set<Long> orderIds = released.stream()
+                        .map(StockHold::getOrderId)
+                        .collect(Collectors.toSet());
+                int cancelled = orderService.cancelExpiredOrders(orderIds);
+                logger.info("Released {} expired stock holds, cancelled {} pending orders",
+                        released.size(), cancelled);
+            }
+        } while (released.size() == batchSize);
+
+        cancelStalePendingOrders();
+    }
+
+    private void cancelStalePendingOrders() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(pendingTimeoutMinutes);
+        List<Long> stale;
+        do {
+            stale = orderService.findStalePendingOrderIds(cutoff, batchSize);
+            if (!stale.isEmpty()) {
+                int cancelled = orderService.cancelExpiredOrders(stale);
+                logger.info("Cancelled {} orders pending since before {}", cancelled, cutoff);
+            }
+        } while (stale.size() == batchSize);
+    }
+}
@@ -0,0 +1,182 @@
+package com.ecommerce.service;
+
+import com.ecommerce.cache.CacheGenerations;
+import com.ecommerce.cache.TwoLevelCacheManager;
+import com.ecommerce.dto.StockLevel;
+import com.ecommerce.event.ProductsChangedEvent;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.ProductRepositoryCustom.StockLevelUpdate;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bulk stock updates for warehouse syncs, read as a JSON array or NDJSON
+ * stream of {@link StockLevel}s.
+ *
+ * <p>Levels are applied in batches of {@code inventory.bulk-update.batch-size},
+ * each a single set-based UPDATE in its own transaction that skips rows
+ * already at the requested level. Only the products that changed are
+ * evicted from the products cache, with one Redis command per batch.
+ */
+@Service
+public class StockSyncService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockSyncService.class);
+    private static final int MAX_REPORTED_IDS = 1000;
+
+    private final ProductRepository productRepository;
+    private final TwoLevelCacheManager cacheManager;
+    private final CacheGenerations cacheGenerations;
+    private final HotStockService hotStockService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate batchTransaction;
+
+    @Value("${inventory.bulk-update.batch-size:1000}")
+    private int batchSize;
+
+    public StockSyncService(ProductRepository productRepository, TwoLevelCacheManager cacheManager,
+            CacheGenerations cacheGenerations, HotStockService hotStockService,
+            ApplicationEventPublisher eventPublisher, ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.cacheManager = cacheManager;
+        this.cacheGenerations = cacheGenerations;
+        this.hotStockService = hotStockService;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Applies every level in {@code in}. Batches that were applied stay
+     * applied if a later one fails. Within a batch the last level given for
+     * a product wins.
+     *
+     * @return counts of received, updated, unchanged, unknown and rejected
+     *         levels and of products set below their held units, each with
+     *         the first ids, or for rejected levels the 1-based positions,
+     *         they apply to
+     */
+    public Map<String, Object> updateStockLevels(InputStream in) throws IOException {
+        long started = System.currentTimeMillis();
+        // Deductions sold before the sync must not be applied to the new figures
+        Set<Long> hotProductIds = hotStockService.getHotProductIds();
+        if (!hotProductIds.isEmpty()) {
+            hotStockService.flushBeforeStockChange();
+        }
+
+        long received = 0;
+        long updated = 0;
+        ReportedIds unknown = new ReportedIds();
+        ReportedIds belowReserved = new ReportedIds();
+        // Rejected levels may have no product id, so they are reported by position
+        ReportedIds rejectedRows = new ReportedIds();
+
+        Map<Long, Integer> batch = new HashMap<>();
+        try (MappingIterator<StockLevel> levels = objectMapper.readerFor(StockLevel.class).readValues(in)) {
+            while (levels.hasNextValue()) {
+                StockLevel level = levels.nextValue();
+                received++;
+                if (level.getProductId() == null || level.getStockQuantity() == null
+                        || level.getStockQuantity() < 0) {
+                    rejectedRows.add(received);
+                    continue;
+                }
+                batch.put(level.getProductId(), level.getStockQuantity());
+                if (batch.size() == batchSize) {
+                    updated += apply(batch, hotProductIds, unknown, belowReserved);
+                }
+            }
+        }
+        updated += apply(batch, hotProductIds, unknown, belowReserved);
+
+        if (updated > 0) {
+            cacheGenerations.bump(ProductListingService.LISTINGS_GENERATION);
+            cacheGenerations.bump(ProductListingService.COUNTS_GENERATION);
+        }
+        logger.info("Bulk stock update: {} levels received, {} products updated, {} unknown, {} rejected",
+                received, updated, unknown.count, rejectedRows.count);
+        if (belowReserved.count > 0) {
+            logger.warn("Bulk stock update set {} products below their held units, e.g. {}; "
+                    + "orders holding them will be cancelled", belowReserved.count, belowReserved.ids);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("received", received);
+        response.put("updated", updated);
+        response.put("unchanged", received - updated - unknown.count - rejectedRows.count);
+        response.put("unknown", unknown.count);
+        response.put("rejected", rejectedRows.count);
+        response.put("belowReserved", belowReserved.count);
+        response.put("unknownProductIds", unknown.ids);
+        response.put("rejectedRows", rejectedRows.ids);
+        response.put("belowReservedProductIds", belowReserved.ids);
+        response.put("elapsedMs", System.currentTimeMillis() - started);
+        return response;
+    }
+
+    /**
+     * Applies and clears one batch, adding ids that do not exist to
+     * {@code unknown} and products now below their held units to
+     * {@code belowReserved}.
+     *
+     * @return the number of products whose stock changed
+     */
+    private int apply(Map<Long, Integer> batch, Set<Long> hotProductIds, ReportedIds unknown,
+            ReportedIds belowReserved) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        StockLevelUpdate result = batchTransaction.execute(status -> {
+            StockLevelUpdate update = productRepository.batchSetStock(batch);
+            List<Long> changed = update.updated();
+            if (!changed.isEmpty()) {
+                cacheManager.evictAll("products", changed);
+                cacheManager.evictAll("productAvailability", changed);
+                eventPublisher.publishEvent(new ProductsChangedEvent(changed));
+                if (changed.stream().anyMatch(hotProductIds::contains)) {
+                    hotStockService.reconcileAfterCommit(changed);
+                }
+            }
+            return update;
+        });
+        batch.clear();
+        result.unknown().forEach(unknown::add);
+        result.belowReserved().forEach(belowReserved::add);
+        return result.updated().size();
+    }
+
+    /**
+     * A count, and the first {@link #MAX_REPORTED_IDS} ids counted, so a
+     * sync of millions of bad rows does not build a response as large.
+     */
+    private static final class ReportedIds {
+
+        private final List<Long> ids = new ArrayList<>();
+        private long count;
+
+        void add(long id) {
+            count++;
+            if (ids.size() < MAX_REPORTED_IDS) {
+                ids.add(id);
+            }
+        }
+    }
+}
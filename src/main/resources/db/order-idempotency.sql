@@ -0,0 +1,16 @@
+-- Idempotency key of the request that placed an order. Idempotent; applied on
+-- every startup before Hibernate validates the schema. On a fresh database the
+-- orders table does not exist yet and Hibernate creates the column itself.
+-- Statements are separated by lines containing only "@@".
+
+ALTER TABLE IF EXISTS orders ADD COLUMN IF NOT EXISTS idempotency_key varchar(150)
+@@
+
+DO $$
+BEGIN
+    IF to_regclass('orders') IS NOT NULL THEN
+        CREATE UNIQUE INDEX IF NOT EXISTS uk_order_idempotency_key ON orders (idempotency_key);
+    END IF;
+END
+$$
+@@
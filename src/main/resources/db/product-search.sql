@@ -0,0 +1,64 @@
+-- Full-text search over product name, category name and description.
+-- Idempotent; applied on every startup after Hibernate has created the tables
+-- and before the application serves requests. Objects that already exist are
+-- left alone, so a restart takes no table locks. Statements are separated by
+-- lines containing only "@@" because the function bodies contain semicolons.
+
+CREATE OR REPLACE FUNCTION products_search_vector_update() RETURNS trigger AS $$
+BEGIN
+    NEW.search_vector :=
+        setweight(to_tsvector('english', coalesce(NEW.name, '')), 'A') ||
+        setweight(to_tsvector('english', coalesce(
+            (SELECT c.name FROM categories c WHERE c.id = NEW.category_id), '')), 'B') ||
+        setweight(to_tsvector('english', coalesce(NEW.description, '')), 'C');
+    RETURN NEW;
+END
+$$ LANGUAGE plpgsql
+@@
+
+CREATE OR REPLACE FUNCTION categories_search_vector_refresh() RETURNS trigger AS $$
+BEGIN
+    UPDATE products SET name = name WHERE category_id = NEW.id;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql
+@@
+
+-- ALTER TABLE and CREATE TRIGGER lock the table even when there is nothing to
+-- do, so they only run when something is missing. The column and both
+-- triggers are added in one transaction; CREATE OR REPLACE keeps a node that
+-- starts at the same moment from failing on the second CREATE.
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_attribute
+                   WHERE attrelid = 'products'::regclass AND attname = 'search_vector' AND NOT attisdropped) THEN
+        ALTER TABLE products ADD COLUMN IF NOT EXISTS search_vector tsvector;
+    END IF;
+
+    -- Stock and price updates do not touch the indexed columns and skip the trigger
+    IF NOT EXISTS (SELECT 1 FROM pg_trigger
+                   WHERE tgrelid = 'products'::regclass AND tgname = 'trg_products_search_vector') THEN
+        CREATE OR REPLACE TRIGGER trg_products_search_vector
+            BEFORE INSERT OR UPDATE OF name, description, category_id ON products
+            FOR EACH ROW EXECUTE FUNCTION products_search_vector_update();
+    END IF;
+
+    IF NOT EXISTS (SELECT 1 FROM pg_trigger
+                   WHERE tgrelid = 'categories'::regclass AND tgname = 'trg_categories_search_vector') THEN
+        CREATE OR REPLACE TRIGGER trg_categories_search_vector
+            AFTER UPDATE OF name ON categories
+            FOR EACH ROW WHEN (OLD.name IS DISTINCT FROM NEW.name)
+            EXECUTE FUNCTION categories_search_vector_refresh();
+    END IF;
+END
+$$
+@@
+
+-- Backfill rows written before the trigger existed, before the index reads them
+UPDATE products SET name = name WHERE search_vector IS NULL
+@@
+
+-- Built without blocking writes; ProductSearchSchema drops a build that failed
+-- part way, which would otherwise be left behind INVALID and never rebuilt
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_product_search_vector ON products USING GIN (search_vector)
+@@
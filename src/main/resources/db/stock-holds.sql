@@ -0,0 +1,23 @@
+-- Stock holds for pending orders. Idempotent; applied on every startup
+-- before Hibernate validates the schema. On a fresh database the products
+-- table does not exist yet and Hibernate creates the column itself.
+-- Statements are separated by lines containing only "@@", as in product-search.sql.
+
+ALTER TABLE IF EXISTS products ADD COLUMN IF NOT EXISTS reserved_quantity integer NOT NULL DEFAULT 0
+@@
+
+CREATE TABLE IF NOT EXISTS stock_holds (
+    id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    order_id bigint NOT NULL,
+    product_id bigint NOT NULL,
+    quantity integer NOT NULL,
+    expires_at timestamp(6) NOT NULL,
+    created_at timestamp(6) NOT NULL
+)
+@@
+
+CREATE INDEX IF NOT EXISTS idx_stock_hold_order ON stock_holds (order_id)
+@@
+
+CREATE INDEX IF NOT EXISTS idx_stock_hold_expires_at ON stock_holds (expires_at)
+@@
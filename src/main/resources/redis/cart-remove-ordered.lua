@@ -0,0 +1,13 @@
+-- Removes the lines of a cart that were checked out, unless their quantity
+-- changed since checkout read them; a line added to meanwhile stays.
+-- KEYS[1] cart hash; ARGV holds product id and quantity pairs.
+-- Returns the number of lines removed.
+local removed = 0
+for i = 1, #ARGV, 2 do
+    local line = redis.call('HGET', KEYS[1], ARGV[i])
+    if line and string.match(line, '^(%d+)|') == ARGV[i + 1] then
+        redis.call('HDEL', KEYS[1], ARGV[i])
+        removed = removed + 1
+    end
+end
+return removed
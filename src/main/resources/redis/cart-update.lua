@@ -0,0 +1,30 @@
+-- Adds to or sets the quantities of cart lines, all or nothing.
+-- KEYS[1] cart hash: fields are product ids, values "quantity|price".
+-- ARGV[1] 'add' or 'set', ARGV[2] TTL in seconds, ARGV[3] maximum quantity
+-- per line, ARGV[4] maximum lines, then product id, quantity and price triples.
+-- Returns the number of lines in the cart, or -1 if it would get too many.
+local cart, mode = KEYS[1], ARGV[1]
+local maxQuantity, maxLines = tonumber(ARGV[3]), tonumber(ARGV[4])
+
+local lines = redis.call('HLEN', cart)
+for i = 5, #ARGV, 3 do
+    if redis.call('HEXISTS', cart, ARGV[i]) == 0 then
+        lines = lines + 1
+    end
+end
+if lines > maxLines then
+    return -1
+end
+
+for i = 5, #ARGV, 3 do
+    local id, quantity = ARGV[i], tonumber(ARGV[i + 1])
+    if mode == 'add' then
+        local line = redis.call('HGET', cart, id)
+        if line then
+            quantity = quantity + tonumber(string.match(line, '^(%d+)'))
+        end
+    end
+    redis.call('HSET', cart, id, math.min(quantity, maxQuantity) .. '|' .. ARGV[i + 2])
+end
+redis.call('EXPIRE', cart, ARGV[2])
+return lines
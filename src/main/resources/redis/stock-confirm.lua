@@ -0,0 +1,10 @@
+-- Turns an order's reservation into pending write-behind deductions.
+-- KEYS[1] reservation hash of the order, KEYS[2] reserved units per product,
+-- KEYS[3] pending deductions per product. Returns the number of products.
+local entries = redis.call('HGETALL', KEYS[1])
+for i = 1, #entries, 2 do
+    redis.call('HINCRBY', KEYS[2], entries[i], -tonumber(entries[i + 1]))
+    redis.call('HINCRBY', KEYS[3], entries[i], entries[i + 1])
+end
+redis.call('DEL', KEYS[1])
+return #entries / 2
@@ -0,0 +1,11 @@
+-- Resets a product's available counter from its Postgres stock.
+-- KEYS[1] available counter, KEYS[2] pending deductions, KEYS[3] reserved units.
+-- ARGV[1] product id, ARGV[2] stock_quantity read from Postgres.
+local pending = tonumber(redis.call('HGET', KEYS[2], ARGV[1]) or '0')
+local reserved = tonumber(redis.call('HGET', KEYS[3], ARGV[1]) or '0')
+local available = tonumber(ARGV[2]) - pending - reserved
+if available < 0 then
+    available = 0
+end
+redis.call('SET', KEYS[1], available)
+return available
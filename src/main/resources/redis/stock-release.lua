@@ -0,0 +1,16 @@
+-- Puts an order's reserved units back on the available counters.
+-- KEYS[1] reservation hash of the order, KEYS[2] reserved units per product,
+-- KEYS[2 + i] available counter of product ARGV[i]; every key is declared so
+-- the script stays valid on Redis Cluster. Products missing from the
+-- reservation are skipped. Returns the number of products released.
+local count = 0
+for i = 1, #ARGV do
+    local quantity = redis.call('HGET', KEYS[1], ARGV[i])
+    if quantity then
+        redis.call('HINCRBY', KEYS[2], ARGV[i], -tonumber(quantity))
+        redis.call('INCRBY', KEYS[2 + i], quantity)
+        count = count + 1
+    end
+end
+redis.call('DEL', KEYS[1])
+return count
@@ -0,0 +1,29 @@
+-- Reserves stock for the hot products of one order, all or nothing.
+-- KEYS[1] set of hot product ids, KEYS[2] hash of reserved units per product,
+-- KEYS[3] reservation hash of the order, KEYS[3 + i] available counter of line i.
+-- ARGV holds product id and quantity pairs, one pair per line.
+-- Returns {1, reserved line count, 0} or {0, failing line, available units}.
+local hot, reserved, reservation = KEYS[1], KEYS[2], KEYS[3]
+local lines = #ARGV / 2
+
+for i = 1, lines do
+    local id = ARGV[2 * i - 1]
+    if redis.call('SISMEMBER', hot, id) == 1 then
+        local available = tonumber(redis.call('GET', KEYS[3 + i]) or '0')
+        if available < tonumber(ARGV[2 * i]) then
+            return {0, i, available}
+        end
+    end
+end
+
+local count = 0
+for i = 1, lines do
+    local id, quantity = ARGV[2 * i - 1], ARGV[2 * i]
+    if redis.call('SISMEMBER', hot, id) == 1 then
+        redis.call('DECRBY', KEYS[3 + i], quantity)
+        redis.call('HINCRBY', reserved, id, quantity)
+        redis.call('HINCRBY', reservation, id, quantity)
+        count = count + 1
+    end
+end
+return {1, count, 0}
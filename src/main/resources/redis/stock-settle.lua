@@ -0,0 +1,10 @@
+-- Removes deductions that have been written to Postgres from the pending hash,
+-- keeping anything confirmed since the flush read it.
+-- KEYS[1] pending deductions per product; ARGV holds product id and quantity pairs.
+for i = 1, #ARGV, 2 do
+    local left = redis.call('HINCRBY', KEYS[1], ARGV[i], -tonumber(ARGV[i + 1]))
+    if left <= 0 then
+        redis.call('HDEL', KEYS[1], ARGV[i])
+    end
+end
+return 0
@@ -0,0 +1,62 @@
+package com.ecommerce.cache;
+
+import com.ecommerce.dto.ProductDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompactCacheSerializerTest {
+
+    private final CompactCacheSerializer serializer = new CompactCacheSerializer(1024);
+
+    @Test
+    void roundTripsCachedProductListings() {
+        List<ProductDTO> listing = new ArrayList<>();
+        for (long id = 1; id <= 100; id++) {
+            listing.add(product(id));
+        }
+
+        byte[] bytes = serializer.serialize(listing);
+
+        assertThat(bytes[2] & 1).as("large values are LZ4 compressed").isEqualTo(1);
+        assertThat(serializer.deserialize(bytes)).isEqualTo(listing);
+    }
+
+    @Test
+    void roundTripsSmallValuesUncompressed() {
+        byte[] bytes = serializer.serialize(42L);
+
+        assertThat(bytes[2]).isZero();
+        assertThat(serializer.deserialize(bytes)).isEqualTo(42L);
+    }
+
+    @Test
+    void readsValuesOfAnotherVersionAsMisses() {
+        byte[] bytes = serializer.serialize(product(1L));
+        bytes[1] = (byte) (CompactCacheSerializer.VERSION + 1);
+
+        assertThat(serializer.deserialize(bytes)).isNull();
+        assertThat(serializer.deserialize("{\"id\":1}".getBytes())).isNull();
+    }
+
+    @Test
+    void refusesTypesOutsideTheAllowlist() {
+        byte[] bytes = serializer.serialize(URI.create("http://example.com"));
+
+        assertThatThrownBy(() -> serializer.deserialize(bytes)).isInstanceOf(SerializationException.class);
+    }
+
+    private static ProductDTO product(long id) {
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+        return new ProductDTO(id, "Product " + id, "Description of product " + id,
+                new BigDecimal("19.99"), 100, 90, 1L, "Electronics", null, true, now, now);
+    }
+}
@@ -0,0 +1,295 @@
+package com.ecommerce.cache;
+
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.SocketOptions;
+import io.lettuce.core.TimeoutOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fault injection against a stand-in Redis that stops answering without
+ * closing its connections, the way a stalled server behaves. The client is
+ * Lettuce, configured as Spring Boot configures it from
+ * {@code spring.data.redis.timeout} and {@code connect-timeout} in
+ * application.yml. Calls must fail within the command timeout, open the
+ * circuit so later calls are served from L1 and the loader without
+ * touching Redis, and close it again once the probe gets an answer,
+ * replaying the invalidations skipped meanwhile.
+ */
+class RedisCircuitBreakerTest {
+
+    // spring.data.redis.timeout and connect-timeout in application.yml
+    private static final Duration COMMAND_TIMEOUT = Duration.ofMillis(500);
+    private static final Duration CONNECT_TIMEOUT = Duration.ofMillis(1000);
+
+    private StandInRedis redis;
+    private LettuceConnectionFactory connectionFactory;
+    private RedisCircuitBreaker circuitBreaker;
+    private TwoLevelCache cache;
+    private final AtomicInteger databaseReads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        redis = new StandInRedis();
+
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("localhost", redis.port()),
+                LettuceClientConfiguration.builder()
+                        .commandTimeout(COMMAND_TIMEOUT)
+                        .clientOptions(ClientOptions.builder()
+                                .socketOptions(SocketOptions.builder().connectTimeout(CONNECT_TIMEOUT).build())
+                                .timeoutOptions(TimeoutOptions.enabled())
+                                .build())
+                        .build());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+
+        circuitBreaker = new RedisCircuitBreaker(connectionFactory);
+        ReflectionTestUtils.setField(circuitBreaker, "failureThreshold", 3);
+
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
+                .cacheDefaults(RedisCacheConfiguration.defaultCacheConfig()
+                        .serializeValuesWith(
+                                RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
+                        .disableCachingNullValues())
+                .build();
+        redisCacheManager.afterPropertiesSet();
+        TwoLevelCacheManager cacheManager = new TwoLevelCacheManager(redisCacheManager,
+                new StringRedisTemplate(connectionFactory), circuitBreaker, 1000, Duration.ofMinutes(5), Map.of());
+        cache = cacheManager.getTwoLevelCache("products");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        connectionFactory.destroy();
+        redis.close();
+    }
+
+    @Test
+    void stalledRedisFailsFastThenIsBypassed() {
+        assertThat(load(1L)).isEqualTo("product 1");
+        assertThat(redis.values).containsKey("products::1");
+
+        redis.stall();
+        long started = System.nanoTime();
+        for (long id = 2; id <= 3; id++) {
+            // A lookup and a write-back, each giving up after the command timeout
+            assertThat(load(id)).isEqualTo("product " + id);
+        }
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(3));
+        assertThat(circuitBreaker.isOpen()).isTrue();
+
+        int commandsBefore = redis.commands.size();
+        started = System.nanoTime();
+        for (long id = 4; id <= 100; id++) {
+            assertThat(load(id)).isEqualTo("product " + id);
+        }
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofMillis(500));
+        assertThat(redis.commands).hasSize(commandsBefore);
+        assertThat(databaseReads).hasValue(100);
+
+        // Still served from L1 while Redis is bypassed
+        assertThat(load(1L)).isEqualTo("product 1");
+        assertThat(databaseReads).hasValue(100);
+    }
+
+    @Test
+    void probeClosesTheCircuitOnceRedisAnswersAndReplaysInvalidations() {
+        load(1L);
+        redis.stall();
+        for (long id = 2; id <= 3; id++) {
+            load(id);
+        }
+        assertThat(circuitBreaker.isOpen()).isTrue();
+
+        // Written while Redis is bypassed, so Redis keeps the old value for now
+        cache.put(1L, "product 1, renamed");
+        assertThat(redis.values.get("products::1")).isEqualTo("product 1");
+
+        circuitBreaker.probe();
+        assertThat(circuitBreaker.isOpen()).isTrue();
+
+        redis.resume();
+        circuitBreaker.probe();
+        assertThat(circuitBreaker.isOpen()).isFalse();
+        assertThat(redis.values).doesNotContainKey("products::1");
+
+        assertThat(load(5L)).isEqualTo("product 5");
+        assertThat(redis.values).containsKey("products::5");
+    }
+
+    private String load(long id) {
+        return cache.get(id, () -> {
+            databaseReads.incrementAndGet();
+            return "product " + id;
+        });
+    }
+
+    /**
+     * Answers the handful of commands the cache and the probe send, from an
+     * in-memory map. Once stalled it stops reading and answering, and
+     * answers everything sent meanwhile, in order, when resumed.
+     */
+    private static final class StandInRedis implements AutoCloseable {
+
+        final Map<String, String> values = new ConcurrentHashMap<>();
+        // Command name and first argument of every command answered
+        final Queue<String> commands = new ConcurrentLinkedQueue<>();
+        private final ServerSocket serverSocket;
+        private final Queue<Socket> sockets = new ConcurrentLinkedQueue<>();
+        private volatile boolean stalled;
+
+        StandInRedis() throws IOException {
+            serverSocket = new ServerSocket(0);
+            Thread acceptor = new Thread(this::accept, "stand-in-redis");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        void stall() {
+            stalled = true;
+        }
+
+        void resume() {
+            stalled = false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    sockets.add(socket);
+                    Thread handler = new Thread(() -> serve(socket), "stand-in-redis-connection");
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket socket) {
+            try (socket) {
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                OutputStream out = socket.getOutputStream();
+                List<String> command;
+                while ((command = readCommand(in)) != null) {
+                    while (stalled && !socket.isClosed()) {
+                        Thread.sleep(10);
+                    }
+                    out.write(reply(command).getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // Client gave up on the connection
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private String reply(List<String> command) {
+            String name = command.get(0).toUpperCase();
+            commands.add(command.size() > 1 ? name + " " + command.get(1) : name);
+            switch (name) {
+                case "HELLO":
+                    // As Redis 5 does, so the client falls back to RESP2
+                    return "-ERR unknown command 'HELLO'\r\n";
+                case "PING":
+                    return "+PONG\r\n";
+                case "GET":
+                    return bulk(values.get(command.get(1)));
+                case "SET":
+                    values.put(command.get(1), command.get(2));
+                    return "+OK\r\n";
+                case "DEL":
+                    int deleted = 0;
+                    for (String key : command.subList(1, command.size())) {
+                        deleted += values.remove(key) != null ? 1 : 0;
+                    }
+                    return ":" + deleted + "\r\n";
+                case "PUBLISH":
+                    return ":0\r\n";
+                default:
+                    // Connection setup such as CLIENT SETINFO
+                    return "+OK\r\n";
+            }
+        }
+
+        private static String bulk(String value) {
+            if (value == null) {
+                return "$-1\r\n";
+            }
+            return "$" + value.getBytes(StandardCharsets.UTF_8).length + "\r\n" + value + "\r\n";
+        }
+
+        /**
+         * Reads one RESP array of bulk strings, or null at end of stream.
+         */
+        private static List<String> readCommand(InputStream in) throws IOException {
+            String header = readLine(in);
+            if (header == null) {
+                return null;
+            }
+            int count = Integer.parseInt(header.substring(1));
+            List<String> command = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int length = Integer.parseInt(readLine(in).substring(1));
+                byte[] bytes = in.readNBytes(length + 2);
+                command.add(new String(bytes, 0, length, StandardCharsets.UTF_8));
+            }
+            return command;
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') {
+                    return line.toString(StandardCharsets.UTF_8).trim();
+                }
+                line.write(b);
+            }
+            return null;
+        }
+    }
+}
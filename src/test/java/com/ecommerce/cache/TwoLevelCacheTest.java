@@ -0,0 +1,174 @@
+package com.ecommerce.cache;
+
+import com.ecommerce.dto.ProductDTO;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link TwoLevelCache#getAll}: L1 first, then one MGET for the rest, then
+ * one loader call for what is still missing, written back in one pipeline.
+ * Redis is replaced by a mock of the manager's raw MGET and pipeline calls;
+ * values are encoded with the codec the application uses.
+ */
+class TwoLevelCacheTest {
+
+    private static final Duration TIME_TO_LIVE = Duration.ofHours(1);
+
+    private final CompactCacheSerializer serializer = new CompactCacheSerializer(1024);
+    private com.github.benmanes.caffeine.cache.Cache<String, Object> localCache;
+    private TwoLevelCacheManager cacheManager;
+    private RedisCircuitBreaker circuitBreaker;
+    private TwoLevelCache cache;
+    private final List<List<Long>> loaderCalls = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(mock(RedisConnectionFactory.class))
+                .cacheDefaults(RedisCacheConfiguration.defaultCacheConfig()
+                        .entryTtl(TIME_TO_LIVE)
+                        .serializeKeysWith(
+                                RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
+                        .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(serializer))
+                        .disableCachingNullValues())
+                .build();
+        redisCacheManager.afterPropertiesSet();
+
+        localCache = Caffeine.newBuilder().maximumSize(100).build();
+        cacheManager = mock(TwoLevelCacheManager.class);
+        circuitBreaker = new RedisCircuitBreaker(mock(RedisConnectionFactory.class));
+        cache = new TwoLevelCache("products", localCache, redisCacheManager.getCache("products"), cacheManager,
+                circuitBreaker);
+    }
+
+    @Test
+    void readsL1ThenOneMgetThenLoadsOnlyTheRest() {
+        localCache.put("1", product(1L));
+        when(cacheManager.getRemote(List.of("products::2", "products::3", "products::4")))
+                .thenReturn(Arrays.asList(serializer.serialize(product(2L)), null, null));
+
+        // 4 does not exist, so the loader has nothing for it
+        Map<Long, ProductDTO> found = cache.getAll(List.of(1L, 2L, 3L, 4L, 2L), ProductDTO.class,
+                loader(Map.of(3L, product(3L))));
+
+        assertThat(found).containsOnlyKeys(1L, 2L, 3L);
+        assertThat(found.get(2L)).isEqualTo(product(2L));
+        assertThat(loaderCalls).containsExactly(List.of(3L, 4L));
+        assertThat(writtenBack()).containsOnlyKeys("products::3").containsEntry("products::3", product(3L));
+        assertThat(localCache.asMap()).containsOnlyKeys("1", "2", "3");
+        assertThat(cache.getStats().snapshot())
+                .containsEntry("l1Hits", 1L)
+                .containsEntry("l1Misses", 3L)
+                .containsEntry("l2Hits", 1L)
+                .containsEntry("l2Misses", 2L);
+    }
+
+    @Test
+    void allInL1TouchesNeitherRedisNorTheLoader() {
+        localCache.put("1", product(1L));
+        localCache.put("2", product(2L));
+
+        Map<Long, ProductDTO> found = cache.getAll(List.of(2L, 1L), ProductDTO.class, loader(Map.of()));
+
+        assertThat(found).containsOnlyKeys(1L, 2L);
+        assertThat(loaderCalls).isEmpty();
+        verify(cacheManager, never()).getRemote(anyList());
+    }
+
+    @Test
+    void allInRedisSkipsTheLoaderAndTheWriteBack() {
+        when(cacheManager.getRemote(List.of("products::1", "products::2")))
+                .thenReturn(List.of(serializer.serialize(product(1L)), serializer.serialize(product(2L))));
+
+        Map<Long, ProductDTO> found = cache.getAll(List.of(1L, 2L), ProductDTO.class, loader(Map.of()));
+
+        assertThat(found).containsOnlyKeys(1L, 2L);
+        assertThat(loaderCalls).isEmpty();
+        verify(cacheManager, never()).putRemote(anyMap(), any());
+    }
+
+    @Test
+    void unreadableRedisEntriesAreReloaded() {
+        when(cacheManager.getRemote(List.of("products::1")))
+                .thenReturn(List.<byte[]>of("{\"id\":1}".getBytes()));
+
+        Map<Long, ProductDTO> found = cache.getAll(List.of(1L), ProductDTO.class, loader(Map.of(1L, product(1L))));
+
+        assertThat(found).containsEntry(1L, product(1L));
+        assertThat(loaderCalls).containsExactly(List.of(1L));
+        assertThat(writtenBack()).containsOnlyKeys("products::1").containsEntry("products::1", product(1L));
+    }
+
+    @Test
+    void openCircuitLoadsEveryL1MissWithoutRedis() {
+        ReflectionTestUtils.setField(circuitBreaker, "open", true);
+        localCache.put("1", product(1L));
+
+        Map<Long, ProductDTO> found = cache.getAll(List.of(1L, 2L, 3L), ProductDTO.class,
+                loader(Map.of(2L, product(2L), 3L, product(3L))));
+
+        assertThat(found).containsOnlyKeys(1L, 2L, 3L);
+        assertThat(loaderCalls).containsExactly(List.of(2L, 3L));
+        verify(cacheManager, never()).getRemote(anyList());
+        verify(cacheManager, never()).putRemote(anyMap(), any());
+        assertThat(localCache.asMap()).containsOnlyKeys("1", "2", "3");
+    }
+
+    /**
+     * The entries of the single write-back pipeline, decoded.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> writtenBack() {
+        ArgumentCaptor<Map<String, byte[]>> entries = ArgumentCaptor.forClass(Map.class);
+        verify(cacheManager).putRemote(entries.capture(), eq(TIME_TO_LIVE));
+        Map<String, Object> decoded = new HashMap<>();
+        entries.getValue().forEach((key, bytes) -> decoded.put(key, serializer.deserialize(bytes)));
+        return decoded;
+    }
+
+    private Function<List<Long>, Map<Long, ProductDTO>> loader(Map<Long, ProductDTO> database) {
+        return ids -> {
+            loaderCalls.add(List.copyOf(ids));
+            Map<Long, ProductDTO> loaded = new HashMap<>();
+            ids.forEach(id -> {
+                if (database.containsKey(id)) {
+                    loaded.put(id, database.get(id));
+                }
+            });
+            return loaded;
+        };
+    }
+
+    private static ProductDTO product(long id) {
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0);
+        return new ProductDTO(id, "Product " + id, "Description of product " + id,
+                new BigDecimal("19.99"), 100, 90, 1L, "Electronics", null, true, now, now);
+    }
+}
@@ -0,0 +1,203 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.CartDTO;
+import com.ecommerce.dto.OrderDTO;
+import com.ecommerce.dto.ProductDTO;
+import com.ecommerce.exception.InsufficientStockException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cart changes and checkout against a mocked Redis: the arguments each
+ * script gets, and that a cart is only emptied once its order was placed.
+ */
+class CartServiceTest {
+
+    private static final Long USER_ID = 1L;
+    private static final String KEY = "checkout:1:3f1c";
+
+    private StringRedisTemplate redisTemplate;
+    private HashOperations<String, Object, Object> hashOperations;
+    private ProductService productService;
+    private OrderService orderService;
+    private CartService cartService;
+    private final List<ScriptCall> scriptCalls = new ArrayList<>();
+
+    private record ScriptCall(RedisScript<?> script, List<String> keys, List<Object> args) {
+    }
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        hashOperations = mock(HashOperations.class);
+        when(redisTemplate.<Object, Object>opsForHash()).thenReturn(hashOperations);
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenAnswer(invocation -> {
+            Object[] arguments = invocation.getRawArguments();
+            scriptCalls.add(new ScriptCall((RedisScript<?>) arguments[0], (List<String>) arguments[1],
+                    List.of((Object[]) arguments[2])));
+            return 2L;
+        });
+
+        productService = mock(ProductService.class);
+        orderService = mock(OrderService.class);
+        when(orderService.findByIdempotencyKey(any())).thenReturn(Optional.empty());
+
+        cartService = new CartService(redisTemplate, productService, orderService);
+        ReflectionTestUtils.setField(cartService, "timeToLiveDays", 30L);
+        ReflectionTestUtils.setField(cartService, "maxLines", 100);
+        ReflectionTestUtils.setField(cartService, "maxQuantity", 99);
+    }
+
+    @Test
+    void addItemSendsQuantityAndCachedPriceInOneScriptCall() {
+        when(productService.getProductById(5L)).thenReturn(product(5L, "19.99", true));
+
+        long lines = cartService.addItem(USER_ID, 5L, 2);
+
+        assertThat(lines).isEqualTo(2);
+        assertThat(scriptCalls).singleElement().satisfies(call -> {
+            assertThat(call.script()).isSameAs(script("UPDATE_SCRIPT"));
+            assertThat(call.keys()).containsExactly("cart:1");
+            assertThat(call.args()).containsExactly("add", "2592000", "99", "100", "5", "2", "19.99");
+        });
+    }
+
+    @Test
+    void setQuantityReplacesTheLine() {
+        when(productService.getProductById(5L)).thenReturn(product(5L, "19.99", true));
+
+        cartService.setQuantity(USER_ID, 5L, 7);
+
+        assertThat(scriptCalls).singleElement()
+                .satisfies(call -> assertThat(call.args()).containsExactly("set", "2592000", "99", "100", "5", "7",
+                        "19.99"));
+    }
+
+    @Test
+    void setQuantityToZeroRemovesTheLine() {
+        cartService.setQuantity(USER_ID, 5L, 0);
+
+        verify(hashOperations).delete("cart:1", "5");
+        assertThat(scriptCalls).isEmpty();
+        verifyNoInteractions(productService);
+    }
+
+    @Test
+    void fullCartIsRefused() {
+        when(productService.getProductById(5L)).thenReturn(product(5L, "19.99", true));
+        doReturn(-1L).when(redisTemplate).execute(any(RedisScript.class), anyList(), any(Object[].class));
+
+        assertThatThrownBy(() -> cartService.addItem(USER_ID, 5L, 1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("100");
+    }
+
+    @Test
+    void checkoutOrdersTheCartThenRemovesTheOrderedQuantities() {
+        cartHolds(Map.of(5L, "2|19.99", 7L, "1|4.50"), product(5L, "21.00", true), product(7L, "4.50", true));
+        OrderDTO order = new OrderDTO();
+        order.setId(42L);
+        when(orderService.placeOrder(any(CartDTO.class), eq("CARD"), eq(KEY))).thenReturn(order);
+
+        OrderDTO placed = cartService.checkout(USER_ID, "CARD", KEY);
+
+        assertThat(placed).isSameAs(order);
+        ArgumentCaptor<CartDTO> cart = ArgumentCaptor.forClass(CartDTO.class);
+        verify(orderService).placeOrder(cart.capture(), eq("CARD"), eq(KEY));
+        // Ordered at the current price, not the one the line was added at
+        assertThat(cart.getValue().getTotalAmount()).isEqualByComparingTo("46.50");
+        assertThat(scriptCalls).singleElement().satisfies(call -> {
+            assertThat(call.script()).isSameAs(script("REMOVE_ORDERED_SCRIPT"));
+            assertThat(call.keys()).containsExactly("cart:1");
+            assertThat(call.args()).containsExactly("5", "2", "7", "1");
+        });
+    }
+
+    @Test
+    void repeatedCheckoutReturnsTheOrderAlreadyPlaced() {
+        OrderDTO order = new OrderDTO();
+        order.setId(42L);
+        when(orderService.findByIdempotencyKey(KEY)).thenReturn(Optional.of(order));
+
+        assertThat(cartService.checkout(USER_ID, "CARD", KEY)).isSameAs(order);
+        verify(orderService, never()).placeOrder(any(CartDTO.class), any(), any());
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    void unavailableProductsBlockCheckout() {
+        cartHolds(Map.of(5L, "2|19.99", 7L, "1|4.50"), product(5L, "19.99", true), product(7L, "4.50", false));
+
+        assertThatThrownBy(() -> cartService.checkout(USER_ID, "CARD", KEY))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Product 7");
+        verify(orderService, never()).placeOrder(any(CartDTO.class), any(), any());
+        assertThat(scriptCalls).isEmpty();
+    }
+
+    @Test
+    void failedOrderLeavesTheCartAsItWas() {
+        cartHolds(Map.of(5L, "2|19.99"), product(5L, "19.99", true));
+        when(orderService.placeOrder(any(CartDTO.class), eq("CARD"), eq(KEY)))
+                .thenThrow(new InsufficientStockException("Product 5", 2, 1));
+
+        assertThatThrownBy(() -> cartService.checkout(USER_ID, "CARD", KEY))
+                .isInstanceOf(InsufficientStockException.class);
+        assertThat(scriptCalls).isEmpty();
+        verify(hashOperations, never()).delete(any(), any(Object[].class));
+    }
+
+    @Test
+    void emptyCartCannotBeCheckedOut() {
+        when(hashOperations.entries("cart:1")).thenReturn(Map.of());
+
+        assertThatThrownBy(() -> cartService.checkout(USER_ID, "CARD", null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Cart is empty");
+    }
+
+    private void cartHolds(Map<Long, String> lines, ProductDTO... products) {
+        Map<Object, Object> entries = new LinkedHashMap<>();
+        lines.keySet().stream().sorted().forEach(productId -> entries.put(productId.toString(), lines.get(productId)));
+        when(hashOperations.entries("cart:1")).thenReturn(entries);
+        when(productService.getProductsByIds(anyList())).thenReturn(List.of(products));
+    }
+
+    private static RedisScript<?> script(String name) {
+        return (RedisScript<?>) ReflectionTestUtils.getField(CartService.class, name);
+    }
+
+    private static ProductDTO product(Long id, String price, boolean available) {
+        ProductDTO product = new ProductDTO();
+        product.setId(id);
+        product.setName("Product " + id);
+        product.setPrice(new BigDecimal(price));
+        product.setAvailable(available);
+        return product;
+    }
+}
@@ -0,0 +1,193 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.ProductIndexEntry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Incremental updates must leave the index answering exactly as one loaded
+ * from scratch with the same products. Random batches of additions, price,
+ * category and date changes and removals are merged in, then every kind of
+ * listing query is checked against a fresh load and against a plain sort of
+ * the products. Prices and dates are drawn from small ranges so ties, which
+ * are broken by id, are common.
+ */
+class CatalogueIndexTest {
+
+    private static final int CATEGORIES = 6;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Test
+    void mergedUpdatesMatchAFreshLoad() {
+        for (long seed = 1; seed <= 20; seed++) {
+            Random random = new Random(seed);
+            Map<Long, ProductIndexEntry> products = new HashMap<>();
+            for (long id = 1; id <= 200; id++) {
+                products.put(id, randomEntry(id, random));
+            }
+            CatalogueIndex index = newIndex();
+            index.load(products.values().stream());
+
+            for (int round = 0; round < 30; round++) {
+                Set<Long> ids = changeSome(products, random);
+                List<ProductIndexEntry> rows = ids.stream()
+                        .map(products::get)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList());
+                index.apply(ids, rows);
+
+                CatalogueIndex fresh = newIndex();
+                fresh.load(products.values().stream());
+                assertSameAnswers(index, fresh, products, random, "seed " + seed + ", round " + round);
+            }
+        }
+    }
+
+    @Test
+    void reapplyingUnchangedRowsReportsNoChanges() {
+        Random random = new Random(7);
+        Map<Long, ProductIndexEntry> products = new HashMap<>();
+        for (long id = 1; id <= 50; id++) {
+            products.put(id, randomEntry(id, random));
+        }
+        CatalogueIndex index = newIndex();
+        index.load(products.values().stream());
+
+        assertThat(index.apply(products.keySet(), new ArrayList<>(products.values()))).isEmpty();
+        // A product that was never indexed and is still not available
+        assertThat(index.apply(Set.of(999L), List.of())).isEmpty();
+    }
+
+    /**
+     * Adds, changes and removes a few random products.
+     *
+     * @return the ids touched, including some left as they were
+     */
+    private static Set<Long> changeSome(Map<Long, ProductIndexEntry> products, Random random) {
+        Set<Long> ids = new HashSet<>();
+        int changes = 1 + random.nextInt(12);
+        for (int i = 0; i < changes; i++) {
+            long id = 1 + random.nextInt(260);
+            ids.add(id);
+            ProductIndexEntry current = products.get(id);
+            int kind = random.nextInt(5);
+            if (current == null) {
+                products.put(id, randomEntry(id, random));
+            } else if (kind == 0) {
+                products.remove(id);
+            } else if (kind == 1) {
+                current.setPrice(randomPrice(random));
+            } else if (kind == 2) {
+                current.setCategoryId(randomCategory(random));
+            } else if (kind == 3) {
+                current.setCreatedAt(randomCreatedAt(random));
+            }
+            // kind 4: re-read without a change
+        }
+        return ids;
+    }
+
+    private static void assertSameAnswers(CatalogueIndex index, CatalogueIndex fresh,
+            Map<Long, ProductIndexEntry> products, Random random, String description) {
+        for (Long categoryId : categoriesToQuery()) {
+            for (String property : List.of("id", "price", "createdAt")) {
+                for (Sort.Direction direction : Sort.Direction.values()) {
+                    BigDecimal minPrice = random.nextBoolean() ? null : randomPrice(random);
+                    BigDecimal maxPrice = random.nextBoolean() ? null : randomPrice(random);
+                    Pageable pageable = PageRequest.of(random.nextInt(4), 1 + random.nextInt(40),
+                            Sort.by(direction, property));
+                    String query = description + ": category " + categoryId + ", " + minPrice + " to " + maxPrice
+                            + ", " + pageable;
+
+                    CatalogueIndex.Hits merged = index.find(categoryId, minPrice, maxPrice, pageable);
+                    assertThat(merged).as(query).isEqualTo(fresh.find(categoryId, minPrice, maxPrice, pageable));
+                    assertThat(merged).as(query)
+                            .isEqualTo(expected(products, categoryId, minPrice, maxPrice, pageable));
+                }
+            }
+            assertThat(index.facets(categoryId, null, null)).as(description)
+                    .isEqualTo(fresh.facets(categoryId, null, null));
+        }
+    }
+
+    /**
+     * The page {@link CatalogueIndex#find} should return, by filtering and
+     * sorting all products.
+     */
+    private static CatalogueIndex.Hits expected(Map<Long, ProductIndexEntry> products, Long categoryId,
+            BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable) {
+        Sort.Order order = pageable.getSort().toList().get(0);
+        Comparator<ProductIndexEntry> byProperty = switch (order.getProperty()) {
+            case "price" -> Comparator.comparing(ProductIndexEntry::getPrice);
+            case "createdAt" -> Comparator.comparing(ProductIndexEntry::getCreatedAt);
+            default -> (a, b) -> 0;
+        };
+        Comparator<ProductIndexEntry> comparator = byProperty.thenComparing(ProductIndexEntry::getId);
+        if (order.isDescending()) {
+            comparator = comparator.reversed();
+        }
+
+        List<Long> matching = products.values().stream()
+                .filter(row -> categoryId == null || row.getCategoryId().equals(categoryId))
+                .filter(row -> minPrice == null || row.getPrice().compareTo(minPrice) >= 0)
+                .filter(row -> maxPrice == null || row.getPrice().compareTo(maxPrice) <= 0)
+                .sorted(comparator)
+                .map(ProductIndexEntry::getId)
+                .collect(Collectors.toList());
+        List<Long> page = matching.stream()
+                .skip(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .collect(Collectors.toList());
+        return new CatalogueIndex.Hits(page, matching.size());
+    }
+
+    private static List<Long> categoriesToQuery() {
+        List<Long> categoryIds = new ArrayList<>();
+        categoryIds.add(null);
+        for (long id = 1; id <= CATEGORIES + 1; id++) {
+            categoryIds.add(id);
+        }
+        return categoryIds;
+    }
+
+    private static CatalogueIndex newIndex() {
+        CatalogueIndex index = new CatalogueIndex(null, null, null);
+        ReflectionTestUtils.setField(index, "priceBuckets",
+                new BigDecimal[] {new BigDecimal("5"), new BigDecimal("10"), new BigDecimal("20")});
+        return index;
+    }
+
+    private static ProductIndexEntry randomEntry(long id, Random random) {
+        return new ProductIndexEntry(id, randomCategory(random), randomPrice(random), randomCreatedAt(random));
+    }
+
+    private static long randomCategory(Random random) {
+        return 1 + random.nextInt(CATEGORIES);
+    }
+
+    private static BigDecimal randomPrice(Random random) {
+        return BigDecimal.valueOf(100 + random.nextInt(40) * 50, 2);
+    }
+
+    private static LocalDateTime randomCreatedAt(Random random) {
+        return START.plusSeconds(random.nextInt(30));
+    }
+}
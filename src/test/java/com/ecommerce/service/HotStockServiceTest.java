@@ -0,0 +1,179 @@
+package com.ecommerce.service;
+
+import com.ecommerce.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The write-behind flush when Postgres has less stock than Redis sold:
+ * the sold units must still leave {@code stock:pending} only once they are
+ * deducted, and the product's {@code stock:available} counter must not go
+ * up. A flush ahead of a stock change waits for the lock rather than being
+ * skipped. Redis and the products table are stood in for by maps, and the
+ * Lua scripts the flush runs by their Java equivalents.
+ */
+class HotStockServiceTest {
+
+    private final Map<String, String> values = new ConcurrentHashMap<>();
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> stock = new HashMap<>();
+    private final Map<Long, Integer> held = new HashMap<>();
+    private HotStockService hotStockService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+        HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.<Object, Object>opsForHash()).thenReturn(hashOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(invocation -> values.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1))
+                        == null);
+        doAnswer(invocation -> values.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(valueOperations).set(anyString(), anyString());
+        when(hashOperations.entries("stock:pending")).thenAnswer(invocation -> {
+            Map<Object, Object> entries = new HashMap<>();
+            pending.forEach((productId, units) -> entries.put(productId, units.toString()));
+            return entries;
+        });
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class)))
+                .thenAnswer(invocation -> {
+                    Object[] arguments = invocation.getRawArguments();
+                    return runScript((RedisScript<?>) arguments[0], (List<String>) arguments[1],
+                            (Object[]) arguments[2]);
+                });
+
+        ProductRepository productRepository = mock(ProductRepository.class);
+        when(productRepository.batchDecrementStock(anyMap())).thenAnswer(invocation -> {
+            Set<Long> failed = new HashSet<>();
+            invocation.<Map<Long, Integer>>getArgument(0).forEach((productId, units) -> {
+                if (stock.get(productId) - held.getOrDefault(productId, 0) >= units) {
+                    stock.merge(productId, -units, Integer::sum);
+                } else {
+                    failed.add(productId);
+                }
+            });
+            return failed;
+        });
+        doAnswer(invocation -> {
+            invocation.<Map<Long, Integer>>getArgument(0).forEach((productId, units) ->
+                    stock.put(productId, Math.max(stock.get(productId) - units, 0)));
+            return null;
+        }).when(productRepository).batchDecrementStockClamped(anyMap());
+
+        hotStockService = new HotStockService(redisTemplate, productRepository, mock(CacheManager.class),
+                mock(ApplicationEventPublisher.class), mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(hotStockService, "enabled", true);
+    }
+
+    @Test
+    void flushDeductsPendingUnitsAndSettlesThem() {
+        stock.put(6L, 10);
+        pending.put("6", 2L);
+        values.put("stock:available:6", "8");
+
+        hotStockService.flushPending();
+
+        assertThat(stock).containsEntry(6L, 8);
+        assertThat(pending).isEmpty();
+        assertThat(values).containsEntry("stock:available:6", "8");
+    }
+
+    @Test
+    void failedFlushDoesNotRaiseAvailableStock() {
+        // Stock was lowered in Postgres to 6, 4 of them held by orders on the
+        // Postgres path, while Redis had already sold 5 more and has none left
+        stock.put(5L, 6);
+        held.put(5L, 4);
+        pending.put("5", 5L);
+        values.put("stock:available:5", "0");
+        stock.put(6L, 10);
+        pending.put("6", 2L);
+        values.put("stock:available:6", "8");
+
+        hotStockService.flushPending();
+
+        // The sold units are deducted as far as they go, and settled
+        assertThat(stock).containsEntry(5L, 1).containsEntry(6L, 8);
+        assertThat(pending).isEmpty();
+        assertThat(values).containsEntry("stock:available:5", "0").containsEntry("stock:available:6", "8");
+
+        // A later flush has nothing to do and offers nothing new either
+        hotStockService.flushPending();
+        assertThat(stock).containsEntry(5L, 1);
+        assertThat(values).containsEntry("stock:available:5", "0");
+    }
+
+    @Test
+    void flushBeforeAStockChangeWaitsForTheLock() throws Exception {
+        stock.put(6L, 10);
+        pending.put("6", 2L);
+        values.put("stock:flush:lock", "another node");
+
+        // A scheduled flush gives up at once while another node holds the lock
+        hotStockService.flushPending();
+        assertThat(pending).containsEntry("6", 2L);
+
+        Thread release = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            values.remove("stock:flush:lock");
+        });
+        release.start();
+        hotStockService.flushBeforeStockChange();
+        release.join();
+
+        assertThat(stock).containsEntry(6L, 8);
+        assertThat(pending).isEmpty();
+    }
+
+    private Object runScript(RedisScript<?> script, List<String> keys, Object[] args) {
+        if (script == script("SETTLE_SCRIPT")) {
+            for (int i = 0; i < args.length; i += 2) {
+                long left = pending.merge((String) args[i], -Long.parseLong((String) args[i + 1]), Long::sum);
+                if (left <= 0) {
+                    pending.remove((String) args[i]);
+                }
+            }
+            return 0L;
+        }
+        if (script == script("UNLOCK_SCRIPT")) {
+            return values.remove(keys.get(0), args[0]) ? 1L : 0L;
+        }
+        throw new AssertionError("Unexpected script " + script);
+    }
+
+    private static RedisScript<?> script(String name) {
+        return (RedisScript<?>) ReflectionTestUtils.getField(HotStockService.class, name);
+    }
+}
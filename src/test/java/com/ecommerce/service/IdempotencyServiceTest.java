@@ -0,0 +1,211 @@
+package com.ecommerce.service;
+
+import com.ecommerce.cache.RedisCircuitBreaker;
+import com.ecommerce.dto.OrderDTO;
+import com.ecommerce.dto.OrderItemRequest;
+import com.ecommerce.dto.OrderRequest;
+import com.ecommerce.exception.RequestInProgressException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Replays, mismatched bodies and concurrent duplicates of an
+ * {@code Idempotency-Key}, against a mocked Redis backed by a map.
+ */
+class IdempotencyServiceTest {
+
+    private static final String SCOPE = "order:1";
+
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+    private final AtomicInteger runs = new AtomicInteger();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private RedisCircuitBreaker circuitBreaker;
+    private IdempotencyService idempotencyService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> values = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(values);
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(invocation -> redis.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1))
+                        == null);
+        when(values.get(anyString())).thenAnswer(invocation -> redis.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> redis.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(values).set(anyString(), anyString(), any(Duration.class));
+        when(redisTemplate.delete(anyString()))
+                .thenAnswer(invocation -> redis.remove(invocation.<String>getArgument(0)) != null);
+
+        circuitBreaker = new RedisCircuitBreaker(mock(RedisConnectionFactory.class));
+        idempotencyService = new IdempotencyService(redisTemplate, circuitBreaker,
+                new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(idempotencyService, "timeToLiveHours", 24L);
+        ReflectionTestUtils.setField(idempotencyService, "pendingTimeToLiveSeconds", 60L);
+        ReflectionTestUtils.setField(idempotencyService, "waitTimeoutMillis", 5000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void replayReturnsTheStoredResultWithoutRunningAgain() {
+        OrderDTO first = execute("key-1", request(2), placeOrder(41L));
+        OrderDTO replayed = execute("key-1", request(2), placeOrder(42L));
+
+        assertThat(replayed.getId()).isEqualTo(first.getId()).isEqualTo(41L);
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void actionReceivesTheScopedKeyToRecord() {
+        OrderDTO order = execute("key-1", request(2), recordedKey -> {
+            assertThat(recordedKey).isEqualTo("order:1:key-1");
+            return placeOrder(41L).apply(recordedKey);
+        });
+
+        assertThat(order.getId()).isEqualTo(41L);
+    }
+
+    @Test
+    void reusingAKeyForADifferentRequestIsRejected() {
+        execute("key-1", request(2), placeOrder(41L));
+
+        assertThatThrownBy(() -> execute("key-1", request(3), placeOrder(42L)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("different request");
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void concurrentDuplicateWaitsForTheFirstResult() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        Future<OrderDTO> first = executor.submit(() -> execute("key-1", request(2), recordedKey -> {
+            started.countDown();
+            await(finish);
+            return placeOrder(41L).apply(recordedKey);
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        Future<OrderDTO> duplicate = executor.submit(() -> execute("key-1", request(2), placeOrder(42L)));
+        Thread.sleep(200);
+        assertThat(duplicate).isNotDone();
+        finish.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS).getId()).isEqualTo(41L);
+        assertThat(duplicate.get(5, TimeUnit.SECONDS).getId()).isEqualTo(41L);
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void concurrentDuplicateGivesUpAfterTheWaitTimeout() throws Exception {
+        ReflectionTestUtils.setField(idempotencyService, "waitTimeoutMillis", 200L);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        Future<OrderDTO> first = executor.submit(() -> execute("key-1", request(2), recordedKey -> {
+            started.countDown();
+            await(finish);
+            return placeOrder(41L).apply(recordedKey);
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> execute("key-1", request(2), placeOrder(42L)))
+                .isInstanceOf(RequestInProgressException.class);
+        finish.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS).getId()).isEqualTo(41L);
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void failedRequestReleasesTheKeyForARetry() {
+        assertThatThrownBy(() -> execute("key-1", request(2), recordedKey -> {
+            throw new IllegalStateException("payment gateway down");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(redis).isEmpty();
+
+        OrderDTO retried = execute("key-1", request(2), placeOrder(41L));
+
+        assertThat(retried.getId()).isEqualTo(41L);
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void unavailableRedisRunsTheActionWithTheScopedKey() {
+        ReflectionTestUtils.setField(circuitBreaker, "open", true);
+
+        OrderDTO order = execute("key-1", request(2), recordedKey -> {
+            assertThat(recordedKey).isEqualTo("order:1:key-1");
+            return placeOrder(41L).apply(recordedKey);
+        });
+
+        assertThat(order.getId()).isEqualTo(41L);
+        assertThat(redis).isEmpty();
+    }
+
+    @Test
+    void rejectsBlankAndOverlongKeys() {
+        assertThatThrownBy(() -> execute(" ", request(2), placeOrder(41L)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> execute("k".repeat(101), request(2), placeOrder(41L)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(runs).hasValue(0);
+    }
+
+    private OrderDTO execute(String idempotencyKey, OrderRequest request, Function<String, OrderDTO> action) {
+        return idempotencyService.execute(SCOPE, idempotencyKey, request, OrderDTO.class, action);
+    }
+
+    private Function<String, OrderDTO> placeOrder(Long orderId) {
+        return recordedKey -> {
+            runs.incrementAndGet();
+            OrderDTO order = new OrderDTO();
+            order.setId(orderId);
+            order.setStatus("PENDING");
+            return order;
+        };
+    }
+
+    private static OrderRequest request(int quantity) {
+        OrderRequest request = new OrderRequest();
+        request.setItems(List.of(new OrderItemRequest(5L, quantity)));
+        request.setPaymentMethod("CARD");
+        return request;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.ecommerce.service;
+
+import com.ecommerce.event.OrderPlacedEvent;
+import com.ecommerce.metrics.OrderMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.math.BigDecimal;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderPaymentProcessorTest {
+
+    private PaymentService paymentService;
+    private OrderService orderService;
+    private OrderMetrics orderMetrics;
+
+    @BeforeEach
+    void setUp() {
+        paymentService = mock(PaymentService.class);
+        orderService = mock(OrderService.class);
+        orderMetrics = new OrderMetrics(new SimpleMeterRegistry());
+    }
+
+    @Test
+    void rejectedPaymentTaskCancelsTheOrder() {
+        OrderPaymentProcessor processor = new OrderPaymentProcessor(paymentService, orderService, orderMetrics,
+                task -> {
+                    throw new TaskRejectedException("queue full");
+                });
+
+        processor.onOrderPlaced(event(1L));
+
+        verify(orderService).abortOrder(1L, "CARD", false);
+        verify(paymentService, never()).authorizePayment(anyLong(), any(), anyString());
+    }
+
+    @Test
+    void failedCompletionAfterChargeRecordsARefund() {
+        OrderPaymentProcessor processor = new OrderPaymentProcessor(paymentService, orderService, orderMetrics,
+                Runnable::run);
+        when(paymentService.authorizePayment(eq(2L), any(), eq("CARD"))).thenReturn(true);
+        doThrow(new IllegalStateException("database down"))
+                .when(orderService).completeOrder(2L, "CARD", true);
+
+        processor.onOrderPlaced(event(2L));
+
+        verify(orderService).abortOrder(2L, "CARD", true);
+    }
+
+    @Test
+    void gatewayErrorCancelsTheOrderWithoutRefund() {
+        OrderPaymentProcessor processor = new OrderPaymentProcessor(paymentService, orderService, orderMetrics,
+                Runnable::run);
+        when(paymentService.authorizePayment(eq(3L), any(), eq("CARD")))
+                .thenThrow(new IllegalStateException("gateway timeout"));
+
+        processor.onOrderPlaced(event(3L));
+
+        verify(orderService, never()).completeOrder(anyLong(), anyString(), anyBoolean());
+        verify(orderService).abortOrder(3L, "CARD", false);
+    }
+
+    /**
+     * Places far more orders than the pool and queue can take at once: every
+     * order must still end up either completed or aborted, none left PENDING.
+     */
+    @Test
+    void everyOrderIsSettledUnderLoad() throws Exception {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(50);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        OrderPaymentProcessor processor = new OrderPaymentProcessor(paymentService, orderService, orderMetrics,
+                executor);
+
+        int orders = 500;
+        when(paymentService.authorizePayment(anyLong(), any(), anyString())).thenAnswer(invocation -> {
+            Thread.sleep(2);
+            return ((Long) invocation.getArgument(0)) % 3 != 0;
+        });
+        Set<Long> settled = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (!settled.add(invocation.getArgument(0))) {
+                duplicates.incrementAndGet();
+            }
+            return null;
+        }).when(orderService).completeOrder(anyLong(), anyString(), anyBoolean());
+        doAnswer(invocation -> {
+            if (!settled.add(invocation.getArgument(0))) {
+                duplicates.incrementAndGet();
+            }
+            return null;
+        }).when(orderService).abortOrder(anyLong(), anyString(), anyBoolean());
+
+        ExecutorService requests = Executors.newFixedThreadPool(50);
+        CountDownLatch start = new CountDownLatch(1);
+        for (long orderId = 1; orderId <= orders; orderId++) {
+            long id = orderId;
+            requests.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                processor.onOrderPlaced(event(id));
+            });
+        }
+        start.countDown();
+        requests.shutdown();
+        assertThat(requests.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        executor.shutdown();
+
+        assertThat(settled).hasSize(orders);
+        assertThat(duplicates).hasValue(0);
+    }
+
+    private static OrderPlacedEvent event(Long orderId) {
+        return new OrderPlacedEvent(orderId, new BigDecimal("10.00"), "CARD");
+    }
+}
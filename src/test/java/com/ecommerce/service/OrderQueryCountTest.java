@@ -0,0 +1,205 @@
+package com.ecommerce.service;
+
+import com.ecommerce.dto.OrderDTO;
+import com.ecommerce.entity.Category;
+import com.ecommerce.entity.Order;
+import com.ecommerce.entity.OrderItem;
+import com.ecommerce.entity.Payment;
+import com.ecommerce.entity.Product;
+import com.ecommerce.entity.User;
+import com.ecommerce.metrics.OrderMetrics;
+import com.ecommerce.security.UserDetailsImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Order history and the admin orders page must load in a fixed number of
+ * statements however many orders, items and customers they show. Counted
+ * with Hibernate statistics against H2, after clearing the persistence
+ * context so nothing is served from it.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(OrderService.class)
+class OrderQueryCountTest {
+
+    private static final int ITEMS_PER_ORDER = 3;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private InventoryService inventoryService;
+
+    @MockBean
+    private PaymentService paymentService;
+
+    @MockBean
+    private HotStockService hotStockService;
+
+    @MockBean
+    private OrderMetrics orderMetrics;
+
+    @MockBean
+    private ObjectMapper objectMapper;
+
+    private Statistics statistics;
+    private final List<User> customers = new ArrayList<>();
+    private final List<Product> products = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        Category category = new Category();
+        category.setName("Electronics");
+        entityManager.persist(category);
+        for (int i = 1; i <= 5; i++) {
+            Product product = new Product();
+            product.setName("Product " + i);
+            product.setPrice(new BigDecimal("10.00").multiply(BigDecimal.valueOf(i)));
+            product.setStockQuantity(100);
+            product.setCategory(category);
+            products.add(entityManager.persist(product));
+        }
+    }
+
+    @AfterEach
+    void clearAuthentication() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void orderHistoryQueryCountDoesNotGrowWithOrders() {
+        User customer = customer();
+        signIn(customer);
+        placeOrders(List.of(customer), 2);
+        long fewOrders = statementsFor(() -> orderService.getUserOrderHistory());
+
+        placeOrders(List.of(customer), 48);
+        List<OrderDTO> history = new ArrayList<>();
+        long manyOrders = statementsFor(() -> history.addAll(orderService.getUserOrderHistory()));
+
+        assertThat(history).hasSize(50)
+                .allSatisfy(order -> {
+                    assertThat(order.getItems()).hasSize(ITEMS_PER_ORDER)
+                            .allSatisfy(item -> assertThat(item.getProductName()).isNotNull());
+                    assertThat(order.getPaymentStatus()).isEqualTo("SUCCESS");
+                });
+        assertThat(manyOrders).isEqualTo(fewOrders).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void pagedOrderHistoryQueryCountDoesNotGrowWithPageSize() {
+        User customer = customer();
+        signIn(customer);
+        placeOrders(List.of(customer), 40);
+
+        long smallPage = statementsFor(() -> orderService.getUserOrderHistory(PageRequest.of(0, 2)));
+        long largePage = statementsFor(() -> orderService.getUserOrderHistory(PageRequest.of(0, 40)));
+
+        assertThat(largePage).isEqualTo(smallPage).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    void adminOrdersPageQueryCountDoesNotGrowWithOrdersOrCustomers() {
+        // More orders than fit on a page, so both runs include the count query
+        placeOrders(List.of(customer(), customer()), 25);
+        PageRequest page = PageRequest.of(0, 20, Sort.by("createdAt").descending());
+        long fewOrders = statementsFor(() -> orderService.getAllOrders(page));
+
+        List<User> moreCustomers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            moreCustomers.add(customer());
+        }
+        placeOrders(moreCustomers, 40);
+        List<OrderDTO> content = new ArrayList<>();
+        long manyOrders = statementsFor(() -> content.addAll(orderService.getAllOrders(page).getContent()));
+
+        assertThat(content).hasSize(20)
+                .allSatisfy(order -> assertThat(order.getItems()).hasSize(ITEMS_PER_ORDER));
+        assertThat(manyOrders).isEqualTo(fewOrders).isLessThanOrEqualTo(4);
+    }
+
+    /**
+     * Statements prepared while running {@code read} on an empty
+     * persistence context.
+     */
+    private long statementsFor(Supplier<?> read) {
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+        read.get();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private User customer() {
+        int number = customers.size() + 1;
+        User user = new User();
+        user.setUsername("customer" + number);
+        user.setEmail("customer" + number + "@example.com");
+        user.setPassword("secret");
+        customers.add(entityManager.persist(user));
+        return user;
+    }
+
+    private void placeOrders(List<User> buyers, int count) {
+        for (int i = 0; i < count; i++) {
+            Order order = new Order();
+            order.setUser(buyers.get(i % buyers.size()));
+            order.setStatus(Order.OrderStatus.CONFIRMED);
+            for (int j = 0; j < ITEMS_PER_ORDER; j++) {
+                Product product = products.get((i + j) % products.size());
+                OrderItem item = new OrderItem();
+                item.setProduct(product);
+                item.setQuantity(1 + j);
+                item.setPrice(product.getPrice());
+                order.addOrderItem(item);
+            }
+            order.calculateTotal();
+            entityManager.persist(order);
+
+            Payment payment = new Payment();
+            payment.setOrder(order);
+            payment.setAmount(order.getTotalAmount());
+            payment.setPaymentMethod("CARD");
+            payment.setStatus(Payment.PaymentStatus.SUCCESS);
+            entityManager.persist(payment);
+            order.setPayment(payment);
+        }
+    }
+
+    private static void signIn(User user) {
+        UserDetailsImpl principal = UserDetailsImpl.build(user);
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities()));
+    }
+}
@@ -0,0 +1,180 @@
+package com.ecommerce.service;
+
+import com.ecommerce.cache.CacheGenerations;
+import com.ecommerce.cache.TwoLevelCacheManager;
+import com.ecommerce.dto.ProductDTO;
+import com.ecommerce.entity.Category;
+import com.ecommerce.entity.Product;
+import com.ecommerce.metrics.OrderMetrics;
+import com.ecommerce.repository.CategoryRepository;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.StockHoldRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CachingConfigurer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Product and stock writes must only touch the cached entry of the product
+ * they change, so one admin edit does not send every other product back to
+ * the database. Stock holds change no cached entry and evict nothing.
+ */
+@SpringJUnitConfig(ProductCacheEvictionTest.Config.class)
+class ProductCacheEvictionTest {
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private TwoLevelCacheManager twoLevelCacheManager;
+
+    private Cache products;
+
+    @BeforeEach
+    void setUp() {
+        reset(productRepository, twoLevelCacheManager);
+        products = cacheManager.getCache("products");
+        products.clear();
+        for (long id = 1; id <= 3; id++) {
+            ProductDTO cached = new ProductDTO();
+            cached.setId(id);
+            cached.setStockQuantity(10);
+            products.put(id, cached);
+        }
+    }
+
+    @Test
+    void stockUpdateEvictsOnlyThatProduct() {
+        Product product = product(2L);
+        when(productRepository.findById(2L)).thenReturn(Optional.of(product));
+        when(productRepository.save(product)).thenReturn(product);
+
+        inventoryService.updateStock(2L, 0);
+
+        assertThat(products.get(2L)).isNull();
+        assertThat(cachedStock(1L)).isEqualTo(10);
+        assertThat(cachedStock(3L)).isEqualTo(10);
+    }
+
+    @Test
+    void stockDeductionEvictsOnlyThatProduct() {
+        when(productRepository.decrementStock(3L, 1)).thenReturn(1);
+
+        inventoryService.tryDeductStock(3L, 1);
+
+        assertThat(products.get(3L)).isNull();
+        assertThat(cachedStock(1L)).isEqualTo(10);
+        assertThat(cachedStock(2L)).isEqualTo(10);
+    }
+
+    @Test
+    void holdingStockEvictsNothing() {
+        inventoryService.holdStock(7L, Map.of(1L, 2, 3L, 1));
+
+        verify(twoLevelCacheManager, never()).evictAll(anyString(), anyCollection());
+        assertThat(cachedStock(1L)).isEqualTo(10);
+        assertThat(cachedStock(3L)).isEqualTo(10);
+    }
+
+    @Test
+    void productUpdateReplacesOnlyThatProduct() {
+        Product product = product(2L);
+        when(productRepository.findById(2L)).thenReturn(Optional.of(product));
+        when(productRepository.saveAndFlush(any(Product.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        ProductDTO update = new ProductDTO();
+        update.setStockQuantity(4);
+
+        productService.updateProduct(2L, update);
+
+        assertThat(cachedStock(2L)).isEqualTo(4);
+        assertThat(cachedStock(1L)).isEqualTo(10);
+        assertThat(cachedStock(3L)).isEqualTo(10);
+    }
+
+    private Integer cachedStock(Long id) {
+        ProductDTO cached = products.get(id, ProductDTO.class);
+        assertThat(cached).as("cached product %d", id).isNotNull();
+        return cached.getStockQuantity();
+    }
+
+    private static Product product(Long id) {
+        Category category = new Category();
+        category.setId(1L);
+        category.setName("Electronics");
+        Product product = new Product();
+        product.setId(id);
+        product.setName("Product " + id);
+        product.setPrice(new BigDecimal("19.99"));
+        product.setStockQuantity(10);
+        product.setCategory(category);
+        return product;
+    }
+
+    @Configuration
+    @EnableCaching
+    static class Config implements CachingConfigurer {
+
+        @Bean
+        @Override
+        public CacheManager cacheManager() {
+            return new ConcurrentMapCacheManager("products", "productAvailability");
+        }
+
+        @Bean
+        ProductRepository productRepository() {
+            return mock(ProductRepository.class);
+        }
+
+        @Bean
+        TwoLevelCacheManager twoLevelCacheManager() {
+            return mock(TwoLevelCacheManager.class);
+        }
+
+        @Bean
+        InventoryService inventoryService(ProductRepository productRepository,
+                TwoLevelCacheManager twoLevelCacheManager) {
+            return new InventoryService(productRepository, twoLevelCacheManager,
+                    mock(CacheGenerations.class), mock(OrderMetrics.class), mock(HotStockService.class),
+                    mock(StockHoldRepository.class), mock(ApplicationEventPublisher.class));
+        }
+
+        @Bean
+        ProductService productService(ProductRepository productRepository) {
+            return new ProductService(productRepository, mock(CategoryRepository.class),
+                    mock(ProductListingService.class), new ProductMapper(), mock(CacheGenerations.class),
+                    mock(CatalogueIndex.class), mock(TwoLevelCacheManager.class),
+                    mock(ApplicationEventPublisher.class), mock(HotStockService.class));
+        }
+    }
+}
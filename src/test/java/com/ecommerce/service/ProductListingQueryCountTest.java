@@ -0,0 +1,176 @@
+package com.ecommerce.service;
+
+import com.ecommerce.cache.CacheGenerations;
+import com.ecommerce.cache.TwoLevelCacheManager;
+import com.ecommerce.controller.InventoryController;
+import com.ecommerce.dto.ProductDTO;
+import com.ecommerce.entity.Category;
+import com.ecommerce.entity.Product;
+import com.ecommerce.metrics.OrderMetrics;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CachingConfigurer;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Product listings must load the category of every product in the same
+ * statement as the products, so a page costs the same number of queries
+ * whatever its size and however many categories it spans. Caches are
+ * switched off so every call reaches the database.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@Import({ProductService.class, ProductListingService.class, ProductMapper.class, InventoryService.class})
+class ProductListingQueryCountTest {
+
+    private static final PageRequest FIRST_PAGE = PageRequest.of(0, 20, Sort.by("price"));
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean(name = "cacheGenerations")
+    private CacheGenerations cacheGenerations;
+
+    @MockBean
+    private CatalogueIndex catalogueIndex;
+
+    @MockBean
+    private TwoLevelCacheManager twoLevelCacheManager;
+
+    @MockBean
+    private HotStockService hotStockService;
+
+    @MockBean
+    private OrderMetrics orderMetrics;
+
+    private Statistics statistics;
+    private final List<Category> categories = new ArrayList<>();
+    private int productCount;
+
+    @TestConfiguration
+    static class NoCaching implements CachingConfigurer {
+
+        @Override
+        public CacheManager cacheManager() {
+            return new NoOpCacheManager();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void allProductsPageLoadsCategoriesWithTheProducts() {
+        addProducts(2, 25);
+        long fewCategories = statementsFor(() -> productService.getAllProducts(FIRST_PAGE));
+
+        addProducts(20, 40);
+        List<ProductDTO> page = new ArrayList<>();
+        long manyCategories = statementsFor(() -> page.addAll(productService.getAllProducts(FIRST_PAGE).getContent()));
+
+        assertThat(page).hasSize(20).allSatisfy(product -> assertThat(product.getCategoryName()).isNotNull());
+        // The page and its count
+        assertThat(manyCategories).isEqualTo(fewCategories).isEqualTo(2);
+    }
+
+    @Test
+    void filteredPageLoadsCategoriesWithTheProducts() {
+        addProducts(10, 100);
+        BigDecimal minPrice = new BigDecimal("5.00");
+        BigDecimal maxPrice = new BigDecimal("80.00");
+
+        long smallPage = statementsFor(() -> productService.getProductsByFilters(null, minPrice, maxPrice,
+                PageRequest.of(0, 5, Sort.by("price"))));
+        List<ProductDTO> page = new ArrayList<>();
+        long largePage = statementsFor(() -> page.addAll(productService.getProductsByFilters(null, minPrice,
+                maxPrice, PageRequest.of(0, 50, Sort.by("price"))).getContent()));
+        long oneCategory = statementsFor(() -> productService.getProductsByFilters(categories.get(3).getId(),
+                minPrice, maxPrice, PageRequest.of(0, 5, Sort.by("price"))));
+
+        assertThat(page).hasSize(50).allSatisfy(product -> assertThat(product.getCategoryName()).isNotNull());
+        assertThat(largePage).isEqualTo(smallPage).isEqualTo(oneCategory).isEqualTo(2);
+    }
+
+    @Test
+    void lowStockReportLoadsCategoriesWithTheProducts() {
+        InventoryController controller = new InventoryController(inventoryService, hotStockService,
+                mock(StockSyncService.class));
+        addProducts(3, 6);
+        long fewProducts = statementsFor(() -> controller.getLowStockProducts());
+
+        addProducts(30, 60);
+        List<Map<String, Object>> report = new ArrayList<>();
+        long manyProducts = statementsFor(() -> report.addAll(controller.getLowStockProducts().getBody()));
+
+        assertThat(report).hasSize(66).allSatisfy(row -> assertThat(row.get("categoryName")).isNotNull());
+        assertThat(manyProducts).isEqualTo(fewProducts).isEqualTo(1);
+    }
+
+    /**
+     * Statements prepared while running {@code read} on an empty
+     * persistence context.
+     */
+    private long statementsFor(Supplier<?> read) {
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+        read.get();
+        return statistics.getPrepareStatementCount();
+    }
+
+    /**
+     * Adds {@code count} products with stock below the low-stock threshold,
+     * spread over {@code categoryCount} new categories.
+     */
+    private void addProducts(int categoryCount, int count) {
+        List<Category> added = new ArrayList<>();
+        for (int i = 0; i < categoryCount; i++) {
+            Category category = new Category();
+            category.setName("Category " + (categories.size() + 1));
+            categories.add(entityManager.persist(category));
+            added.add(category);
+        }
+        for (int i = 0; i < count; i++) {
+            productCount++;
+            Product product = new Product();
+            product.setName("Product " + productCount);
+            product.setPrice(BigDecimal.valueOf(100 + productCount * 37 % 9900, 2));
+            product.setStockQuantity(productCount % 10);
+            product.setCategory(added.get(i % categoryCount));
+            entityManager.persist(product);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.ecommerce.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProductSearchQueryTest {
+
+    @Test
+    void onlyTheLastTermIsAPrefix() {
+        assertThat(ProductService.toPrefixTsQuery("Wireless Headph")).isEqualTo("wireless & headph:*");
+        assertThat(ProductService.toPrefixTsQuery("usb")).isEqualTo("usb:*");
+    }
+
+    @Test
+    void dropsTsQueryOperators() {
+        assertThat(ProductService.toPrefixTsQuery("usb | !cable & (c)")).isEqualTo("usb & cable & c:*");
+    }
+
+    @Test
+    void rejectsQueriesWithoutTerms() {
+        assertThatThrownBy(() -> ProductService.toPrefixTsQuery("&& !"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,115 @@
+package com.ecommerce.service;
+
+import com.ecommerce.cache.TwoLevelCache;
+import com.ecommerce.cache.TwoLevelCacheManager;
+import com.ecommerce.dto.ProductDTO;
+import com.ecommerce.entity.Category;
+import com.ecommerce.entity.Product;
+import com.ecommerce.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * {@link ProductService#getProductsByIds} returns products in the order they
+ * were asked for, whichever level of the cache or the database each came
+ * from, and skips ids that do not exist. The unheld quantity comes from its
+ * own cache, never from the cached product.
+ */
+class ProductsByIdsTest {
+
+    private ProductRepository productRepository;
+    private TwoLevelCacheManager cacheManager;
+    private ProductService productService;
+    private final List<Collection<Long>> queries = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        cacheManager = mock(TwoLevelCacheManager.class);
+        productService = new ProductService(productRepository, null, null, new ProductMapper(), null, null,
+                cacheManager, null, null);
+
+        when(productRepository.findWithCategoryByIdIn(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            queries.add(List.copyOf(ids));
+            // The database returns rows in its own order, and nothing for 404
+            return ids.stream().filter(id -> id != 404L).sorted().map(ProductsByIdsTest::product).toList();
+        });
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void keepsTheRequestedOrderAcrossCacheHitsAndLoads() {
+        TwoLevelCache cache = mock(TwoLevelCache.class);
+        when(cacheManager.getTwoLevelCache("products")).thenReturn(cache);
+        // 7 is a cache hit; the rest go through the loader
+        when(cache.getAll(eq(List.of(9L, 404L, 7L, 3L)), eq(ProductDTO.class), any())).thenAnswer(invocation -> {
+            Function<List<Long>, Map<Long, ProductDTO>> loader = invocation.getArgument(2);
+            Map<Long, ProductDTO> found = new HashMap<>(loader.apply(List.of(9L, 404L, 3L)));
+            found.put(7L, new ProductMapper().toDTO(product(7L)));
+            return found;
+        });
+
+        List<ProductDTO> products = productService.getProductsByIds(List.of(9L, 404L, 7L, 3L));
+
+        assertThat(products).extracting(ProductDTO::getId).containsExactly(9L, 7L, 3L);
+        assertThat(queries).containsExactly(List.of(9L, 404L, 3L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void takesTheAvailableQuantityFromItsOwnCache() {
+        TwoLevelCache products = mock(TwoLevelCache.class);
+        TwoLevelCache availability = mock(TwoLevelCache.class);
+        when(cacheManager.getTwoLevelCache("products")).thenReturn(products);
+        when(cacheManager.getTwoLevelCache("productAvailability")).thenReturn(availability);
+        Map<Long, ProductDTO> cached = new HashMap<>();
+        when(products.getAll(eq(List.of(4L, 6L)), eq(ProductDTO.class), any())).thenAnswer(invocation -> {
+            Function<List<Long>, Map<Long, ProductDTO>> loader = invocation.getArgument(2);
+            cached.putAll(loader.apply(List.of(4L, 6L)));
+            return cached;
+        });
+        when(availability.getAll(anyCollection(), eq(Integer.class), any())).thenReturn(Map.of(4L, 3, 6L, 0));
+
+        List<ProductDTO> found = productService.getProductsByIds(List.of(4L, 6L));
+
+        assertThat(found).extracting(ProductDTO::getAvailableQuantity).containsExactly(3, 0);
+        assertThat(cached.values()).extracting(ProductDTO::getAvailableQuantity).containsOnlyNulls();
+    }
+
+    @Test
+    void loadsEverythingInOneQueryWithoutACache() {
+        List<ProductDTO> products = productService.getProductsByIds(List.of(5L, 2L, 404L, 8L));
+
+        assertThat(products).extracting(ProductDTO::getId).containsExactly(5L, 2L, 8L);
+        assertThat(queries).hasSize(1);
+    }
+
+    private static Product product(Long id) {
+        Category category = new Category();
+        category.setId(1L);
+        category.setName("Electronics");
+        Product product = new Product();
+        product.setId(id);
+        product.setName("Product " + id);
+        product.setPrice(new BigDecimal("19.99"));
+        product.setStockQuantity(10);
+        product.setCategory(category);
+        return product;
+    }
+}
@@ -0,0 +1,93 @@
+package com.ecommerce.service;
+
+import com.ecommerce.cache.CacheGenerations;
+import com.ecommerce.cache.TwoLevelCacheManager;
+import com.ecommerce.repository.ProductRepository;
+import com.ecommerce.repository.ProductRepositoryCustom.StockLevelUpdate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * What a warehouse sync reports back: products it left below the units
+ * held for pending orders, and unknown ids counted in full but listed only
+ * up to a cap. The products table is stood in for by a map of stock and
+ * held units; ids without an entry do not exist.
+ */
+class StockSyncServiceTest {
+
+    private final Map<Long, Integer> held = Map.of(1L, 5, 2L, 5);
+    private ProductRepository productRepository;
+    private StockSyncService stockSyncService;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        when(productRepository.batchSetStock(anyMap())).thenAnswer(invocation -> {
+            List<Long> updated = new ArrayList<>();
+            List<Long> unknown = new ArrayList<>();
+            List<Long> belowReserved = new ArrayList<>();
+            invocation.<Map<Long, Integer>>getArgument(0).forEach((productId, quantity) -> {
+                if (!held.containsKey(productId)) {
+                    unknown.add(productId);
+                    return;
+                }
+                updated.add(productId);
+                if (quantity < held.get(productId)) {
+                    belowReserved.add(productId);
+                }
+            });
+            return new StockLevelUpdate(updated, unknown, belowReserved);
+        });
+
+        stockSyncService = new StockSyncService(productRepository, mock(TwoLevelCacheManager.class),
+                mock(CacheGenerations.class), mock(HotStockService.class), mock(ApplicationEventPublisher.class),
+                new ObjectMapper(), mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(stockSyncService, "batchSize", 100);
+    }
+
+    @Test
+    void reportsProductsSetBelowTheirHeldUnits() throws Exception {
+        Map<String, Object> response = sync("""
+                [{"productId": 1, "stockQuantity": 3},
+                 {"productId": 2, "stockQuantity": 8}]
+                """);
+
+        assertThat(response).containsEntry("updated", 2L)
+                .containsEntry("belowReserved", 1L)
+                .containsEntry("belowReservedProductIds", List.of(1L));
+    }
+
+    @Test
+    void countsEveryUnknownIdButListsOnlyTheFirstThousand() throws Exception {
+        StringBuilder levels = new StringBuilder();
+        for (long productId = 1001; productId <= 3500; productId++) {
+            levels.append("{\"productId\": ").append(productId).append(", \"stockQuantity\": 1}\n");
+        }
+
+        Map<String, Object> response = sync(levels.toString());
+
+        assertThat(response).containsEntry("received", 2500L)
+                .containsEntry("unknown", 2500L)
+                .containsEntry("unchanged", 0L);
+        assertThat((List<?>) response.get("unknownProductIds")).hasSize(1000).doesNotHaveDuplicates();
+    }
+
+    private Map<String, Object> sync(String body) throws Exception {
+        return stockSyncService.updateStockLevels(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+}